@@ -13,74 +13,168 @@ import javax.sound.sampled.*;
 // [핵심] BGM 플레이어 클래스 (Java 기본 라이브러리 - WAV 지원)
 // ========================================================
 class BGMPlayer {
-    private static BGMPlayer instance;
-    private Clip clip;
-    private FloatControl volumeControl;
-    private boolean initialized = false;
+    private static final String DEFAULT_TRACK = "노래.wav";
+    // 화면별 배경음 (파일이 없으면 기본 곡)
+    private static final java.util.Map<String, String> SCREEN_TRACKS = java.util.Map.of(
+            CrazyArcade_UI.PANEL_MENU, DEFAULT_TRACK,
+            CrazyArcade_UI.PANEL_LOBBY, "lobby.wav",
+            CrazyArcade_UI.PANEL_GAME, "game.wav",
+            CrazyArcade_UI.PANEL_CREDITS, "credits.wav");
+    // 각 화면에서 다음으로 갈 가능성이 높은 화면 (미리 디코딩해 둘 대상)
+    private static final java.util.Map<String, String[]> NEXT_SCREENS = java.util.Map.of(
+            CrazyArcade_UI.PANEL_SPLASH, new String[] { CrazyArcade_UI.PANEL_MENU },
+            CrazyArcade_UI.PANEL_MENU, new String[] { CrazyArcade_UI.PANEL_LOBBY, CrazyArcade_UI.PANEL_CREDITS },
+            CrazyArcade_UI.PANEL_LOBBY, new String[] { CrazyArcade_UI.PANEL_GAME, CrazyArcade_UI.PANEL_MENU },
+            CrazyArcade_UI.PANEL_GAME, new String[] { CrazyArcade_UI.PANEL_LOBBY },
+            CrazyArcade_UI.PANEL_CREDITS, new String[] { CrazyArcade_UI.PANEL_MENU });
+
+    // 화면 -> 실제로 재생할 자원 이름 (시작할 때 I/O 스레드에서 한 번 확인해 둔다)
+    private static final java.util.concurrent.ConcurrentHashMap<String, String> resolvedTracks = new java.util.concurrent.ConcurrentHashMap<>();
+    // 파일 경로 -> 디코딩 결과 (진행 중이거나 끝난 것)
+    private final java.util.concurrent.ConcurrentHashMap<String, java.util.concurrent.CompletableFuture<AudioBank.Sample>> tracks = new java.util.concurrent.ConcurrentHashMap<>();
+    private volatile String wantedTrack;
+    private volatile AudioBank.Sample track;
+    private volatile boolean enabled = false;
+    private volatile boolean initialized = false;
 
     private BGMPlayer() {
     }
 
+    // 클래스 로딩 시점에 한 번만 만들어지는 지연 초기화 (어느 스레드에서 불러도 안전)
+    private static class Holder {
+        static final BGMPlayer INSTANCE = new BGMPlayer();
+    }
+
     public static BGMPlayer getInstance() {
-        if (instance == null) {
-            instance = new BGMPlayer();
-        }
-        return instance;
+        return Holder.INSTANCE;
     }
 
-    public void loadAndPlay(String filePath) {
-        try {
-            File file = new File(filePath);
-            if (!file.exists()) {
-                System.err.println("BGM 파일을 찾을 수 없습니다: " + filePath);
-                return;
-            }
+    public static String trackFor(String screen) {
+        String resolved = resolvedTracks.get(screen);
+        if (resolved != null)
+            return resolved;
+        // 아직 확인 전이면 곡이 없다고 보고 기본 곡 (EDT 에서 디스크를 보지 않는다)
+        return SCREEN_TRACKS.containsKey(screen) ? DEFAULT_TRACK : null;
+    }
+
+    // 화면별 곡이 자원에 있는지 확인 (main 에서 I/O 스레드로 호출)
+    public static void resolveTracks() {
+        for (java.util.Map.Entry<String, String> entry : SCREEN_TRACKS.entrySet())
+            resolvedTracks.put(entry.getKey(), Assets.exists(entry.getValue()) ? entry.getValue() : DEFAULT_TRACK);
+    }
 
-            AudioInputStream audioStream = AudioSystem.getAudioInputStream(file);
-            clip = AudioSystem.getClip();
-            clip.open(audioStream);
+    // 스플래시가 끝나면 켠다. 그 전에는 화면이 바뀌어도 음악을 틀지 않는다
+    public void enable() {
+        enabled = true;
+    }
 
-            // 볼륨 컨트롤 설정
-            if (clip.isControlSupported(FloatControl.Type.MASTER_GAIN)) {
-                volumeControl = (FloatControl) clip.getControl(FloatControl.Type.MASTER_GAIN);
-                setVolume(GameSettings.bgmVolume);
+    // 화면 전환 시 호출 (EDT). 곡이 정해져 있지 않은 화면은 지금 곡을 그대로 둔다
+    public void playForScreen(String screen) {
+        String path = trackFor(screen);
+        if (enabled && path != null)
+            loadAndPlay(path);
+        String[] next = NEXT_SCREENS.get(screen);
+        if (next == null)
+            return;
+        java.util.Set<String> keep = new java.util.HashSet<>();
+        if (wantedTrack != null)
+            keep.add(wantedTrack);
+        for (String n : next) {
+            String p = trackFor(n);
+            if (p != null) {
+                keep.add(p);
+                prefetch(p);
             }
+        }
+        // 지금 곡과 다음 후보를 제외한 디코딩 결과는 놓아준다 (곡 하나가 수십 MB)
+        // 아직 디코딩 중이면 끝나는 즉시 AudioBank 에서도 뺀다
+        tracks.entrySet().removeIf(entry -> {
+            if (keep.contains(entry.getKey()))
+                return false;
+            String name = "bgm:" + entry.getKey();
+            entry.getValue().thenAccept(sample -> {
+                if (sample != null)
+                    AudioBank.unload(name, sample);
+            });
+            return true;
+        });
+    }
 
-            clip.loop(Clip.LOOP_CONTINUOUSLY); // 무한 반복
-            clip.start();
-            initialized = true;
-            System.out.println("BGM 재생 시작: " + filePath);
+    // I/O 스레드에서 디코딩만 해 둔다
+    // 실패하면 (결과 null) 목록에서 빼서 다음 요청 때 다시 시도한다
+    public java.util.concurrent.CompletableFuture<AudioBank.Sample> prefetch(String trackName) {
+        java.util.concurrent.CompletableFuture<AudioBank.Sample> future = tracks.computeIfAbsent(trackName,
+                p -> IoService.submit(() -> {
+                    try (java.io.InputStream in = Assets.open(p)) {
+                        return AudioBank.load("bgm:" + p, in);
+                    } catch (java.io.FileNotFoundException e) {
+                        System.err.println("BGM 파일을 찾을 수 없습니다: " + p);
+                        return null;
+                    } catch (Exception e) {
+                        System.err.println("BGM 로드 실패: " + e.getMessage());
+                        return null;
+                    }
+                }));
+        future.whenComplete((sample, error) -> {
+            if (sample == null)
+                tracks.remove(trackName, future);
+        });
+        return future;
+    }
 
-        } catch (Exception e) {
-            System.err.println("BGM 로드 실패: " + e.getMessage());
-            e.printStackTrace();
+    // 디코딩이 끝나는 대로 (이미 끝났으면 바로) 크로스페이드. EDT 를 막지 않는다
+    // 같은 곡을 여러 번 불러도 클립이 쌓이지 않고, 멈춰 있었다면 다시 재생만 한다
+    public synchronized void loadAndPlay(String filePath) {
+        if (filePath.equals(wantedTrack)) {
+            AudioMixer.getInstance().setMusicPaused(false);
+            return;
         }
+        wantedTrack = filePath;
+        prefetch(filePath).thenAccept(sample -> {
+            if (sample == null) {
+                synchronized (this) {
+                    if (filePath.equals(wantedTrack))
+                        wantedTrack = null; // 같은 곡을 다시 요청하면 새로 읽도록
+                }
+                return;
+            }
+            if (!filePath.equals(wantedTrack))
+                return; // 그 사이 다른 화면으로 넘어감
+            AudioEvent event = new AudioEvent();
+            event.begin();
+            track = sample;
+            AudioMixer.getInstance().playMusic(sample, AudioMixer.DEFAULT_FADE_MILLIS);
+            initialized = true;
+            event.commit("loadAndPlay", filePath, sample.sizeInBytes(), GameSettings.bgmVolume);
+            System.out.println("BGM 재생 시작: " + filePath);
+        });
     }
 
     public void setVolume(int volume) {
-        if (volumeControl != null) {
-            // 0-100을 데시벨로 변환
-            float min = volumeControl.getMinimum();
-            float max = volumeControl.getMaximum();
-            float gain = min + (max - min) * (volume / 100.0f);
-            volumeControl.setValue(gain);
-        }
+        AudioEvent event = new AudioEvent();
+        event.begin();
+        AudioMixer.getInstance().setMusicVolume(volume);
+        event.commit("setVolume", null, 0, volume);
     }
 
     public void stop() {
-        if (clip != null && clip.isRunning()) {
-            clip.stop();
-        }
+        AudioMixer.getInstance().setMusicPaused(true);
     }
 
     public void pause() {
+        AudioEvent event = new AudioEvent();
+        event.begin();
         stop();
+        event.commit("pause", null, 0, GameSettings.bgmVolume);
     }
 
     public void resume() {
-        if (clip != null) {
-            clip.start();
+        AudioEvent event = new AudioEvent();
+        event.begin();
+        if (track != null) {
+            AudioMixer.getInstance().setMusicPaused(false);
         }
+        event.commit("resume", null, 0, GameSettings.bgmVolume);
     }
 
     public boolean isInitialized() {
@@ -88,6 +182,491 @@ class BGMPlayer {
     }
 }
 
+// ========================================================
+// [핵심] 오디오 뱅크 - WAV 를 출력 장치 포맷의 PCM 으로 미리 디코딩해서 공유
+// ========================================================
+// 효과음은 시작할 때 한 번만 디코딩하고, 재생할 때는 같은 버퍼를 읽기만 한다.
+// (동시에 20개가 터져도 메모리/디코딩 비용이 늘지 않음)
+class AudioBank {
+    public static final String SFX_SPLASH = "splash";
+
+    // 출력 장치가 직접 받는 포맷 (믹서가 이 포맷으로 라인을 연다)
+    public static final AudioFormat OUTPUT_FORMAT = chooseOutputFormat();
+
+    private static final java.util.concurrent.ConcurrentHashMap<String, Sample> samples = new java.util.concurrent.ConcurrentHashMap<>();
+
+    static class Sample {
+        final String name;
+        final java.nio.ShortBuffer pcm; // 인터리브된 16비트 샘플 (direct, 읽기 전용)
+        final int frames;
+
+        Sample(String name, java.nio.ShortBuffer pcm) {
+            this.name = name;
+            this.pcm = pcm;
+            this.frames = pcm.capacity() / OUTPUT_FORMAT.getChannels();
+        }
+
+        long sizeInBytes() {
+            return pcm.capacity() * 2L;
+        }
+    }
+
+    private static AudioFormat chooseOutputFormat() {
+        float[] rates = { 48000f, 44100f };
+        for (float rate : rates) {
+            AudioFormat f = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, rate, 16, 2, 4, rate, false);
+            try {
+                if (AudioSystem.isLineSupported(new DataLine.Info(SourceDataLine.class, f)))
+                    return f;
+            } catch (Exception e) {
+                break; // 오디오 장치 없음
+            }
+        }
+        return new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, 44100f, 16, 2, 4, 44100f, false);
+    }
+
+    // 시작할 때 모든 효과음을 디코딩 (메인 스레드에서 호출, EDT 아님)
+    public static void preloadEffects() {
+        loadQuietly(SFX_SPLASH, "splash2.wav");
+    }
+
+    private static void loadQuietly(String name, String assetName) {
+        try (java.io.InputStream in = Assets.open(assetName)) {
+            load(name, in);
+        } catch (java.io.FileNotFoundException e) {
+            System.err.println("효과음 파일을 찾을 수 없습니다: " + assetName);
+        } catch (Exception e) {
+            System.err.println("효과음 디코딩 실패: " + assetName + " (" + e.getMessage() + ")");
+        }
+    }
+
+    public static Sample get(String name) {
+        return samples.get(name);
+    }
+
+    // 캐시에서만 뺀다 (재생 중인 보이스/덱은 참조를 가지고 있으므로 끝까지 재생됨)
+    public static void unload(String name) {
+        samples.remove(name);
+    }
+
+    // 그 이름으로 캐시에 든 것이 바로 이 sample 일 때만 뺀다 (같은 이름을 다시 읽은 새 결과는 건드리지 않음)
+    public static void unload(String name, Sample sample) {
+        samples.remove(name, sample);
+    }
+
+    // 이미 디코딩된 것이 있으면 그대로 돌려준다
+    public static Sample load(String name, java.io.InputStream in) throws Exception {
+        Sample cached = samples.get(name);
+        if (cached != null)
+            return cached;
+        Sample sample;
+        // 형식 판별에 mark/reset 이 필요하다
+        java.io.InputStream marked = in.markSupported() ? in : new java.io.BufferedInputStream(in);
+        try (AudioInputStream src = AudioSystem.getAudioInputStream(marked)) {
+            sample = new Sample(name, decode(src, OUTPUT_FORMAT));
+        }
+        Sample prev = samples.putIfAbsent(name, sample);
+        return prev != null ? prev : sample;
+    }
+
+    // 원본을 16비트 PCM 으로 풀고, 채널 수와 샘플레이트를 target 에 맞춘다
+    // (AssetPipeline 이 미리 변환해 둔 자원은 포맷이 같아서 복사만 한다)
+    static java.nio.ShortBuffer decode(AudioInputStream src, AudioFormat target) throws java.io.IOException {
+        AudioFormat in = src.getFormat();
+        int channels = in.getChannels();
+        AudioFormat pcm16 = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, in.getSampleRate(), 16, channels,
+                channels * 2, in.getSampleRate(), false);
+        AudioInputStream stream = in.matches(pcm16) ? src : AudioSystem.getAudioInputStream(pcm16, src);
+        byte[] bytes = stream.readAllBytes();
+        int srcFrames = bytes.length / (channels * 2);
+        java.nio.ShortBuffer srcPcm = java.nio.ByteBuffer.wrap(bytes).order(java.nio.ByteOrder.LITTLE_ENDIAN)
+                .asShortBuffer();
+
+        int outChannels = target.getChannels();
+        double step = in.getSampleRate() / target.getSampleRate();
+        int outFrames = (int) Math.floor(srcFrames / step);
+        java.nio.ShortBuffer out = java.nio.ByteBuffer.allocateDirect(outFrames * outChannels * 2)
+                .order(java.nio.ByteOrder.nativeOrder()).asShortBuffer();
+        if (step == 1.0 && channels == outChannels) {
+            out.put(srcPcm);
+            return out.clear().asReadOnlyBuffer();
+        }
+        for (int f = 0; f < outFrames; f++) {
+            double pos = f * step;
+            int i0 = (int) pos;
+            int i1 = Math.min(i0 + 1, srcFrames - 1);
+            double frac = pos - i0;
+            for (int c = 0; c < outChannels; c++) {
+                int sc = Math.min(c, channels - 1); // 모노 원본은 양쪽 채널로 복제
+                double a = srcPcm.get(i0 * channels + sc);
+                double b = srcPcm.get(i1 * channels + sc);
+                out.put(f * outChannels + c, (short) Math.round(a + (b - a) * frac));
+            }
+        }
+        return out.asReadOnlyBuffer();
+    }
+}
+
+// ========================================================
+// [핵심] 소프트웨어 믹서 - 오디오 스레드 하나가 음악 + 효과음 보이스를 섞어 라인에 쓴다
+// ========================================================
+// 버스(음악/효과음)마다 체감 볼륨 곡선 + 부드러운 게인 램프를 적용하고,
+// 음악은 덱 두 개를 번갈아 쓰며 크로스페이드한다. 오디오 스레드에서는 할당하지 않는다.
+class AudioMixer {
+    private static final int BLOCK_FRAMES = 512; // 약 11ms
+    private static final int MAX_VOICES = 32;
+    public static final int DEFAULT_FADE_MILLIS = 1500;
+
+    private final int channels = AudioBank.OUTPUT_FORMAT.getChannels();
+    private final float sampleRate = AudioBank.OUTPUT_FORMAT.getSampleRate();
+    private final int[] musicBus = new int[BLOCK_FRAMES * channels];
+    private final int[] sfxBus = new int[BLOCK_FRAMES * channels];
+    private final byte[] outBuffer = new byte[BLOCK_FRAMES * channels * 2];
+
+    // 보이스 상태는 오디오 스레드만 건드린다
+    private final AudioBank.Sample[] voiceSample = new AudioBank.Sample[MAX_VOICES];
+    private final int[] voicePos = new int[MAX_VOICES];
+    private final long[] voiceStarted = new long[MAX_VOICES];
+    private long voiceClock;
+
+    // 음악 덱 2개 (크로스페이드용)
+    private final AudioBank.Sample[] deckSample = new AudioBank.Sample[2];
+    private final int[] deckPos = new int[2];
+    private int activeDeck;
+    private int fadeFrames;
+    private int fadeRemaining;
+
+    // 버스 게인 (슬라이더를 끌어도 지퍼 노이즈가 나지 않도록 30ms 로 부드럽게)
+    // 목표값은 명령 큐를 거쳐 오디오 스레드에서만 바뀐다
+    private final GainRamp musicGain = new GainRamp(VolumeCurve.amplitude(GameSettings.bgmVolume), sampleRate, 30);
+    private final GainRamp sfxGain = new GainRamp(VolumeCurve.amplitude(GameSettings.sfxVolume), sampleRate, 30);
+    private final GainRamp pauseGain = new GainRamp(1f, sampleRate, 30);
+
+    // 다른 스레드(EDT, bgm-loader)의 요청은 모두 이 큐를 거쳐 오디오 스레드에서 처리된다
+    private final AudioCommandQueue commands = new AudioCommandQueue(256);
+    // 볼륨은 마지막 값만 의미가 있으므로 슬라이더를 끌어도 큐에는 하나만 들어간다
+    private final java.util.concurrent.atomic.AtomicInteger pendingMusicVolume = new java.util.concurrent.atomic.AtomicInteger(
+            GameSettings.bgmVolume);
+    private final java.util.concurrent.atomic.AtomicInteger pendingSfxVolume = new java.util.concurrent.atomic.AtomicInteger(
+            GameSettings.sfxVolume);
+    private final java.util.concurrent.atomic.AtomicBoolean volumePending = new java.util.concurrent.atomic.AtomicBoolean();
+
+    private volatile SourceDataLine line;
+
+    private AudioMixer() {
+    }
+
+    private static class Holder {
+        static final AudioMixer INSTANCE = create();
+
+        private static AudioMixer create() {
+            AudioMixer mixer = new AudioMixer();
+            mixer.start();
+            return mixer;
+        }
+    }
+
+    public static AudioMixer getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private void start() {
+        try {
+            line = AudioSystem.getSourceDataLine(AudioBank.OUTPUT_FORMAT);
+            line.open(AudioBank.OUTPUT_FORMAT, outBuffer.length * 4);
+            line.start();
+        } catch (Exception e) {
+            System.err.println("오디오 출력 장치를 열 수 없습니다: " + e.getMessage());
+            line = null;
+            return;
+        }
+        Thread t = new Thread(this::run, "audio-mixer");
+        t.setDaemon(true);
+        t.setPriority(Thread.MAX_PRIORITY);
+        t.start();
+    }
+
+    public void play(AudioBank.Sample sample) {
+        if (sample != null)
+            submit(AudioCommandQueue.OP_PLAY_SFX, sample, 0);
+    }
+
+    // 다음 곡으로 크로스페이드 (null 이면 페이드 아웃)
+    public void playMusic(AudioBank.Sample sample, int fadeMillis) {
+        submit(AudioCommandQueue.OP_PLAY_MUSIC, sample, fadeMillis);
+    }
+
+    public void setMusicPaused(boolean paused) {
+        submit(paused ? AudioCommandQueue.OP_PAUSE_MUSIC : AudioCommandQueue.OP_RESUME_MUSIC, null, 0);
+    }
+
+    public void setMusicVolume(int volume) {
+        pendingMusicVolume.set(volume);
+        requestVolumeUpdate();
+    }
+
+    public void setSfxVolume(int volume) {
+        pendingSfxVolume.set(volume);
+        requestVolumeUpdate();
+    }
+
+    // 큐에 넣지 못했으면 표시를 되돌려, 다음 슬라이더 변경이 다시 명령을 넣을 수 있게 한다
+    private void requestVolumeUpdate() {
+        if (!volumePending.getAndSet(true) && !submit(AudioCommandQueue.OP_SET_VOLUME, null, 0))
+            volumePending.set(false);
+    }
+
+    private boolean submit(int op, AudioBank.Sample sample, int arg) {
+        if (line == null)
+            return false; // 오디오 장치 없음
+        if (commands.offer(op, sample, arg))
+            return true;
+        System.err.println("오디오 명령 큐가 가득 찼습니다: " + op);
+        return false;
+    }
+
+    // 블록마다 한 번, 쌓인 명령을 모두 처리한다 (오디오 스레드)
+    private void drainCommands() {
+        while (commands.poll()) {
+            switch (commands.polledOp) {
+                case AudioCommandQueue.OP_PLAY_SFX:
+                    startVoice(commands.polledSample);
+                    break;
+                case AudioCommandQueue.OP_PLAY_MUSIC:
+                    switchMusic(commands.polledSample, commands.polledArg);
+                    pauseGain.target = 1f;
+                    break;
+                case AudioCommandQueue.OP_PAUSE_MUSIC:
+                    pauseGain.target = 0f;
+                    break;
+                case AudioCommandQueue.OP_RESUME_MUSIC:
+                    pauseGain.target = 1f;
+                    break;
+                case AudioCommandQueue.OP_SET_VOLUME:
+                    volumePending.set(false);
+                    musicGain.target = VolumeCurve.amplitude(pendingMusicVolume.get());
+                    sfxGain.target = VolumeCurve.amplitude(pendingSfxVolume.get());
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void run() {
+        while (true) {
+            drainCommands();
+            java.util.Arrays.fill(musicBus, 0);
+            java.util.Arrays.fill(sfxBus, 0);
+            if (pauseGain.target > 0f || pauseGain.current > 0f)
+                mixMusic();
+            mixVoices();
+            for (int f = 0; f < BLOCK_FRAMES; f++) {
+                float gm = musicGain.next() * pauseGain.next();
+                float gs = sfxGain.next();
+                for (int c = 0; c < channels; c++) {
+                    int i = f * channels + c;
+                    int v = (int) (musicBus[i] * gm + sfxBus[i] * gs);
+                    v = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, v));
+                    outBuffer[i * 2] = (byte) v;
+                    outBuffer[i * 2 + 1] = (byte) (v >> 8);
+                }
+            }
+            line.write(outBuffer, 0, outBuffer.length); // 라인 버퍼가 찰 때까지 막혀서 속도가 맞춰진다
+        }
+    }
+
+    private void startVoice(AudioBank.Sample s) {
+        int slot = 0;
+        for (int v = 0; v < MAX_VOICES; v++) {
+            if (voiceSample[v] == null) {
+                slot = v;
+                break;
+            }
+            if (voiceStarted[v] < voiceStarted[slot])
+                slot = v; // 빈 자리가 없으면 가장 오래된 보이스를 뺏는다
+        }
+        voiceSample[slot] = s;
+        voicePos[slot] = 0;
+        voiceStarted[slot] = ++voiceClock;
+    }
+
+    private void switchMusic(AudioBank.Sample m, int fadeMillis) {
+        if (m == deckSample[activeDeck])
+            return; // 이미 재생 중인 곡
+        activeDeck ^= 1;
+        deckSample[activeDeck] = m;
+        deckPos[activeDeck] = 0;
+        // 이전 곡이 없으면 바로 시작
+        fadeFrames = deckSample[activeDeck ^ 1] == null ? 0 : (int) (fadeMillis * sampleRate / 1000);
+        fadeRemaining = fadeFrames;
+        if (fadeFrames == 0)
+            deckSample[activeDeck ^ 1] = null;
+    }
+
+    private void mixMusic() {
+        for (int f = 0; f < BLOCK_FRAMES; f++) {
+            float gIn = 1f, gOut = 0f;
+            if (fadeRemaining > 0) {
+                int idx = (int) ((long) (fadeFrames - fadeRemaining) * (VolumeCurve.FADE_STEPS - 1) / fadeFrames);
+                gIn = VolumeCurve.FADE_IN[idx];
+                gOut = VolumeCurve.FADE_IN[VolumeCurve.FADE_STEPS - 1 - idx];
+                if (--fadeRemaining == 0)
+                    deckSample[activeDeck ^ 1] = null;
+            }
+            mixDeckFrame(activeDeck, f, gIn);
+            if (gOut > 0f)
+                mixDeckFrame(activeDeck ^ 1, f, gOut);
+        }
+    }
+
+    private void mixDeckFrame(int deck, int f, float gain) {
+        AudioBank.Sample m = deckSample[deck];
+        if (m == null || m.frames == 0)
+            return;
+        int base = deckPos[deck] * channels;
+        for (int c = 0; c < channels; c++)
+            musicBus[f * channels + c] += (int) (m.pcm.get(base + c) * gain);
+        if (++deckPos[deck] >= m.frames)
+            deckPos[deck] = 0; // 무한 반복
+    }
+
+    private void mixVoices() {
+        for (int v = 0; v < MAX_VOICES; v++) {
+            AudioBank.Sample s = voiceSample[v];
+            if (s == null)
+                continue;
+            int frames = Math.min(BLOCK_FRAMES, s.frames - voicePos[v]);
+            int base = voicePos[v] * channels;
+            for (int i = 0; i < frames * channels; i++)
+                sfxBus[i] += s.pcm.get(base + i);
+            voicePos[v] += frames;
+            if (voicePos[v] >= s.frames)
+                voiceSample[v] = null;
+        }
+    }
+
+    // 목표 게인까지 한 샘플씩 지수적으로 따라가는 램프 (1차 저역 통과)
+    static final class GainRamp {
+        float target;
+        float current;
+        private final float coeff;
+
+        GainRamp(float initial, float sampleRate, float millis) {
+            target = initial;
+            current = initial;
+            coeff = (float) (1 - Math.exp(-1.0 / (sampleRate * millis / 1000.0)));
+        }
+
+        float next() {
+            current += (target - current) * coeff;
+            if (Math.abs(target - current) < 1e-5f)
+                current = target;
+            return current;
+        }
+    }
+}
+
+// ========================================================
+// [핵심] 볼륨 곡선 - 슬라이더 0~100 을 귀에 고르게 들리는 진폭으로
+// ========================================================
+class VolumeCurve {
+    private static final float RANGE_DB = 45f; // 슬라이더 1 = -45dB, 100 = 0dB
+    public static final int FADE_STEPS = 1024;
+    private static final float[] AMPLITUDE = new float[101];
+    // 등전력(equal-power) 크로스페이드 곡선
+    static final float[] FADE_IN = new float[FADE_STEPS];
+
+    static {
+        for (int v = 1; v <= 100; v++)
+            AMPLITUDE[v] = (float) Math.pow(10, -RANGE_DB * (1 - v / 100.0) / 20);
+        for (int i = 0; i < FADE_STEPS; i++)
+            FADE_IN[i] = (float) Math.sin(Math.PI / 2 * i / (FADE_STEPS - 1));
+    }
+
+    public static float amplitude(int volume) {
+        return AMPLITUDE[Math.max(0, Math.min(100, volume))];
+    }
+}
+
+// ========================================================
+// [핵심] 오디오 명령 큐 - 여러 생산자 / 오디오 스레드 하나가 소비하는 락 없는 링 버퍼
+// ========================================================
+// 슬롯마다 시퀀스 번호를 두는 방식 (Vyukov bounded MPMC 큐를 소비자 하나로 단순화).
+// 슬롯은 미리 만들어 두므로 명령을 넣고 뺄 때 할당이 없다.
+class AudioCommandQueue {
+    static final int OP_PLAY_SFX = 1;
+    static final int OP_PLAY_MUSIC = 2;
+    static final int OP_PAUSE_MUSIC = 3;
+    static final int OP_RESUME_MUSIC = 4;
+    static final int OP_SET_VOLUME = 5;
+
+    private final int capacity;
+    private final int mask;
+    private final java.util.concurrent.atomic.AtomicLongArray sequence;
+    private final int[] ops;
+    private final AudioBank.Sample[] samples;
+    private final int[] args;
+    private final java.util.concurrent.atomic.AtomicLong tail = new java.util.concurrent.atomic.AtomicLong();
+    private long head; // 소비자 전용
+
+    // poll() 이 꺼낸 명령 (소비자 스레드에서만 읽는다)
+    int polledOp;
+    AudioBank.Sample polledSample;
+    int polledArg;
+
+    AudioCommandQueue(int capacity) {
+        if (Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        sequence = new java.util.concurrent.atomic.AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++)
+            sequence.set(i, i);
+        ops = new int[capacity];
+        samples = new AudioBank.Sample[capacity];
+        args = new int[capacity];
+    }
+
+    // 아무 스레드에서나 호출. 가득 차면 false
+    boolean offer(int op, AudioBank.Sample sample, int arg) {
+        long pos = tail.get();
+        int idx;
+        while (true) {
+            idx = (int) (pos & mask);
+            long diff = sequence.get(idx) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1))
+                    break;
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+        ops[idx] = op;
+        samples[idx] = sample;
+        args[idx] = arg;
+        sequence.set(idx, pos + 1); // 발행 (volatile 쓰기라 위의 필드도 함께 보인다)
+        return true;
+    }
+
+    // 오디오 스레드에서만 호출
+    boolean poll() {
+        int idx = (int) (head & mask);
+        if (sequence.get(idx) != head + 1)
+            return false;
+        polledOp = ops[idx];
+        polledSample = samples[idx];
+        polledArg = args[idx];
+        samples[idx] = null;
+        sequence.set(idx, head + capacity);
+        head++;
+        return true;
+    }
+}
+
 // ========================================================
 // [핵심] 공통 테마 색상 (바나나 테마)
 // ========================================================
@@ -118,11 +697,102 @@ class GameSettings {
     public static int p2_Right = KeyEvent.VK_RIGHT;
     public static int p2_Bomb = KeyEvent.VK_NUMPAD1; // 물풍선: NumPad 1
     public static int p2_Item = KeyEvent.VK_NUMPAD0; // 아이템: NumPad 0
+    public static int botCount = 0; // CPU 상대 수 (0~6)
+    public static String selectedMap = "forest01.wbm"; // maps 폴더의 맵 파일
+    public static boolean fullscreen = false;
+    public static int displayWidth = 0; // 전체 화면 해상도 (0 = 현재 해상도 유지)
+    public static int displayHeight = 0;
+    public static int displayRefresh = 0;
+    public static boolean smoothScaling = false; // 확대 필터: false = Nearest, true = Bilinear
+    public static String character = "배찌"; // 로비에서 고른 1P 캐릭터
+
+    // 위의 public static 필드를 이름 그대로 settings.properties 에 저장/복원
+    public static java.io.File file() {
+        return new java.io.File(System.getProperty("user.dir"), "settings.properties");
+    }
+
+    // 시작할 때 main 스레드에서 호출 (믹서가 만들어지기 전에 볼륨이 정해져야 한다)
+    public static void load() {
+        java.io.File file = file();
+        if (!file.isFile())
+            return;
+        java.util.Properties props = new java.util.Properties();
+        try (java.io.Reader in = new java.io.InputStreamReader(new java.io.FileInputStream(file),
+                java.nio.charset.StandardCharsets.UTF_8)) {
+            props.load(in);
+        } catch (java.io.IOException e) {
+            System.err.println("설정 파일을 읽을 수 없습니다: " + e.getMessage());
+            return;
+        }
+        for (java.lang.reflect.Field field : settingFields()) {
+            String value = props.getProperty(field.getName());
+            if (value == null)
+                continue;
+            try {
+                if (field.getType() == int.class)
+                    field.setInt(null, Integer.parseInt(value.trim()));
+                else if (field.getType() == boolean.class)
+                    field.setBoolean(null, Boolean.parseBoolean(value.trim()));
+                else
+                    field.set(null, value);
+            } catch (NumberFormatException | IllegalAccessException e) {
+                System.err.println("설정값이 잘못되었습니다: " + field.getName() + "=" + value);
+            }
+        }
+    }
+
+    // 연달아 저장해도 파일은 한 번에 하나씩, 더 새로운 값이 이미 쓰였으면 오래된 값은 건너뛴다
+    private static final Object saveLock = new Object();
+    private static long saveRequested; // EDT 전용
+    private static long saveWritten; // saveLock 안에서만
+
+    // 값은 EDT 에서 복사하고, 파일 쓰기는 I/O 스레드에서
+    public static java.util.concurrent.CompletableFuture<Void> save() {
+        long seq = ++saveRequested;
+        java.util.Properties props = new java.util.Properties();
+        for (java.lang.reflect.Field field : settingFields()) {
+            try {
+                props.setProperty(field.getName(), String.valueOf(field.get(null)));
+            } catch (IllegalAccessException e) {
+                // public 필드만 다루므로 일어나지 않음
+            }
+        }
+        return IoService.<Void>submit(() -> {
+            synchronized (saveLock) {
+                if (seq <= saveWritten)
+                    return null;
+                java.io.File file = file();
+                java.io.File tmp = new java.io.File(file.getPath() + ".tmp");
+                try (java.io.Writer out = new java.io.OutputStreamWriter(new java.io.FileOutputStream(tmp),
+                        java.nio.charset.StandardCharsets.UTF_8)) {
+                    props.store(out, "Water Bomb Man settings");
+                }
+                java.nio.file.Files.move(tmp.toPath(), file.toPath(),
+                        java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+                saveWritten = seq;
+            }
+            return null;
+        }).exceptionally(e -> {
+            System.err.println("설정 저장 실패: " + e);
+            return null;
+        });
+    }
+
+    private static java.util.List<java.lang.reflect.Field> settingFields() {
+        java.util.List<java.lang.reflect.Field> fields = new java.util.ArrayList<>();
+        for (java.lang.reflect.Field field : GameSettings.class.getFields()) {
+            int mod = field.getModifiers();
+            if (java.lang.reflect.Modifier.isStatic(mod) && !java.lang.reflect.Modifier.isFinal(mod))
+                fields.add(field);
+        }
+        return fields;
+    }
 }
 
 public class CrazyArcade_UI extends JFrame {
     private CardLayout cardLayout;
     private JPanel mainContainer;
+    private ScaledViewport viewport;
     public static final String PANEL_SPLASH = "SPLASH";
     public static final String PANEL_MENU = "MENU";
     public static final String PANEL_LOBBY = "LOBBY";
@@ -130,11 +800,14 @@ public class CrazyArcade_UI extends JFrame {
     public static final String PANEL_GUIDE = "GUIDE";
     public static final String PANEL_CREDITS = "CREDITS";
     public static final String PANEL_SETTINGS = "SETTINGS";
+    private String currentPanel;
+    private static String spectateAddress; // 관전 모드로 시작했을 때 중계 주소 (host:port)
+    private ScreenLoad screenLoad; // 지금 화면의 자원 로딩 (화면을 떠나면 취소)
 
     public CrazyArcade_UI() {
         setTitle("Water Bomb Man - UI Prototype");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        setResizable(false);
+        setResizable(true); // 창 크기에 맞춰 논리 해상도(800x600)를 확대해서 그린다
         cardLayout = new CardLayout();
         mainContainer = new JPanel(cardLayout);
 
@@ -146,33 +819,154 @@ public class CrazyArcade_UI extends JFrame {
         mainContainer.add(new CreditsPanel(this), PANEL_CREDITS);
         mainContainer.add(new SettingsPanel(this), PANEL_SETTINGS);
 
-        add(mainContainer);
+        viewport = new ScaledViewport(mainContainer);
+        add(viewport);
+
+        // F3: 성능 오버레이 (FPS / 프레임 시간 / GC) 켜고 끄기
+        MetricsOverlay overlay = new MetricsOverlay();
+        setGlassPane(overlay);
+        InputRouter.install();
+        InputRouter.setHotkey(KeyEvent.VK_F3, () -> {
+            overlay.toggle();
+            return true;
+        });
+        // ESC: 게임 (또는 관전) 화면에서 로비로
+        InputRouter.setHotkey(KeyEvent.VK_ESCAPE, () -> {
+            if (!PANEL_GAME.equals(currentPanel))
+                return false;
+            showPanel(PANEL_LOBBY);
+            return true;
+        });
+
         pack();
         setLocationRelativeTo(null);
         setVisible(true);
+        if (GameSettings.fullscreen)
+            applyDisplaySettings(); // 저장된 설정이 전체 화면이면 바로 전환
 
         // 스플래시 화면 먼저 표시
         showPanel(PANEL_SPLASH);
     }
 
+    // 지금 화면의 로딩 범위 (화면 안에서 나중에 읽는 자원도 여기에 더하면 화면을 떠날 때 같이 취소된다)
+    public ScreenLoad getScreenLoad() {
+        return screenLoad;
+    }
+
+    public boolean isSpectating() {
+        return spectateAddress != null;
+    }
+
     public void showPanel(String panelName) {
+        ScreenTransitionEvent event = new ScreenTransitionEvent();
+        event.begin();
         cardLayout.show(mainContainer, panelName);
-        if (panelName.equals(PANEL_GAME))
-            mainContainer.getComponent(3).requestFocusInWindow();
+        loadScreenAssets(panelName);
+        GamePanelPlaceholder gp = (GamePanelPlaceholder) mainContainer.getComponent(3);
+        InputRouter.cancelCapture(); // 키 설정 입력 대기는 화면을 떠나면 취소
+        InputRouter.setGameInput(panelName.equals(PANEL_GAME) && spectateAddress == null);
+        if (panelName.equals(PANEL_GAME)) {
+            if (spectateAddress != null)
+                gp.startSpectating(spectateAddress);
+            else
+                gp.startRound();
+            gp.requestFocusInWindow();
+        } else {
+            gp.stopRound();
+            if (PANEL_GAME.equals(currentPanel))
+                spectateAddress = null; // 관전 화면을 나가면 이후로는 보통 게임
+        }
         CreditsPanel cp = (CreditsPanel) mainContainer.getComponent(5);
         if (panelName.equals(PANEL_CREDITS))
             cp.startScrolling();
         else
             cp.stopScrolling();
+        BGMPlayer.getInstance().playForScreen(panelName);
+        event.commit(currentPanel, panelName);
+        currentPanel = panelName;
+    }
+
+    // 이전 화면의 로딩이 남아 있으면 취소하고, 새 화면의 자원을 한 묶음으로 읽기 시작
+    private void loadScreenAssets(String panelName) {
+        if (screenLoad != null)
+            screenLoad.cancel();
+        screenLoad = IoService.openScope(panelName);
+        for (Component c : mainContainer.getComponents()) {
+            if (c.isVisible() && c instanceof ScreenAssets)
+                ((ScreenAssets) c).loadAssets(screenLoad);
+        }
+        screenLoad.seal();
+    }
+
+    // 전체 화면 / 해상도 / 확대 필터를 GameSettings 값대로 적용
+    public void applyDisplaySettings() {
+        viewport.setSmoothScaling(GameSettings.smoothScaling);
+        GraphicsDevice device = getGraphicsConfiguration().getDevice();
+        boolean wasFullscreen = device.getFullScreenWindow() == this;
+        if (GameSettings.fullscreen == wasFullscreen && !GameSettings.fullscreen)
+            return;
+
+        dispose(); // 장식(타이틀 바) 변경은 창이 표시되지 않은 상태에서만 가능
+        if (GameSettings.fullscreen) {
+            setUndecorated(true);
+            if (device.isFullScreenSupported()) {
+                device.setFullScreenWindow(this);
+                DisplayMode mode = findDisplayMode(device);
+                if (mode != null && device.isDisplayChangeSupported()) {
+                    try {
+                        device.setDisplayMode(mode);
+                    } catch (Exception e) {
+                        System.err.println("해상도 변경 실패: " + e.getMessage());
+                    }
+                }
+            } else {
+                // 전용 전체 화면을 못 쓰면 화면 크기의 테두리 없는 창으로 대신한다
+                setBounds(getGraphicsConfiguration().getBounds());
+            }
+        } else {
+            if (wasFullscreen)
+                device.setFullScreenWindow(null); // 원래 해상도로 돌아간다
+            setUndecorated(false);
+            pack();
+            setLocationRelativeTo(null);
+        }
+        setVisible(true);
+        viewport.requestFocusInWindow();
     }
 
-    // BGM 재생 시작 (메뉴 화면으로 이동 시 호출)
+    private static DisplayMode findDisplayMode(GraphicsDevice device) {
+        if (GameSettings.displayWidth == 0)
+            return null;
+        for (DisplayMode m : device.getDisplayModes()) {
+            if (m.getWidth() == GameSettings.displayWidth && m.getHeight() == GameSettings.displayHeight
+                    && m.getRefreshRate() == GameSettings.displayRefresh)
+                return m;
+        }
+        return null;
+    }
+
+    // BGM 켜기 (스플래시가 끝날 때 호출, 곡은 화면 전환 때마다 고른다)
     public void startBGM() {
-        String bgmPath = System.getProperty("user.dir") + File.separator + "노래.wav";
-        BGMPlayer.getInstance().loadAndPlay(bgmPath);
+        BGMPlayer.getInstance().enable();
     }
 
     public static void main(String[] args) {
+        GameSettings.load();
+        // -Dwaterbomb.broadcastPort=7777 : 이 게임을 관전 중계 / -Dwaterbomb.spectate=host:7777 : 관전 화면으로 시작
+        int broadcastPort = Integer.getInteger("waterbomb.broadcastPort", 0);
+        if (broadcastPort > 0)
+            SpectatorServer.start(broadcastPort);
+        spectateAddress = System.getProperty("waterbomb.spectate");
+        Metrics.install();
+        IoService.submit(() -> {
+            BGMPlayer.resolveTracks();
+            return null;
+        });
+        IoService.submit(() -> {
+            MatchLog.open();
+            return null;
+        });
+        AudioBank.preloadEffects();
         SwingUtilities.invokeLater(() -> new CrazyArcade_UI());
     }
 }
@@ -180,7 +974,7 @@ public class CrazyArcade_UI extends JFrame {
 // ========================================================
 // 1. 메뉴 화면
 // ========================================================
-class MenuPanel extends JPanel {
+class MenuPanel extends JPanel implements ScreenAssets {
     private static final int PANEL_WIDTH = 800;
     private static final int PANEL_HEIGHT = 600;
     private Image backgroundImage;
@@ -191,19 +985,6 @@ class MenuPanel extends JPanel {
         setPreferredSize(new Dimension(PANEL_WIDTH, PANEL_HEIGHT));
         setLayout(null);
 
-        // [수정된 부분 시작] 클래스 로더를 이용한 이미지 로드
-        URL startUrl = getClass().getResource("/res/start.png");
-        if (startUrl != null) {
-            ImageIcon icon = new ImageIcon(startUrl);
-            backgroundImage = icon.getImage();
-        } else {
-            // 이미지를 찾지 못했을 때 오류 메시지 출력 (디버깅 용)
-            System.err.println("MenuPanel: Failed to load resource at /res/start.png");
-            // 배경 이미지를 null로 두어 paintComponent에서 대체 배경이 표시되게 함
-            backgroundImage = null;
-        }
-        // [수정된 부분 끝]
-
         int buttonWidth = 130;
         int buttonHeight = 45;
         int gap = 15;
@@ -222,6 +1003,17 @@ class MenuPanel extends JPanel {
                 e -> System.exit(0)));
     }
 
+    // 배경 이미지는 화면에 들어올 때 I/O 스레드에서 읽는다 (못 찾으면 대체 배경)
+    @Override
+    public void loadAssets(ScreenLoad scope) {
+        if (backgroundImage != null)
+            return;
+        scope.fork(() -> AssetLoader.loadImage("start.png"), img -> {
+            backgroundImage = img;
+            repaint();
+        });
+    }
+
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
@@ -277,6 +1069,8 @@ class SettingsPanel extends JPanel {
     private final Color COLOR_MAIN = new Color(255, 225, 53); // 메인 노랑 (바나나)
     private final Color COLOR_DARK = new Color(139, 69, 19); // 갈색 (초코/껍질)
     private final Color COLOR_HIGHLIGHT = new Color(255, 240, 150);
+    // 키 설정 버튼 (StressHarness 가 눌러 본다)
+    final java.util.List<JButton> keyButtons = new java.util.ArrayList<>();
 
     public SettingsPanel(CrazyArcade_UI mainFrame) {
         this.mainFrame = mainFrame;
@@ -299,6 +1093,7 @@ class SettingsPanel extends JPanel {
 
         tabbedPane.addTab(" 사운드 (Sound) ", createSoundPanel());
         tabbedPane.addTab(" 조작키 (Controls) ", createKeyMappingPanel());
+        tabbedPane.addTab(" 화면 (Display) ", createDisplayPanel());
 
         add(tabbedPane, BorderLayout.CENTER);
 
@@ -311,7 +1106,10 @@ class SettingsPanel extends JPanel {
         JButton backBtn = createBananaButton("저장 후 돌아가기");
         backBtn.setFont(new Font("맑은 고딕", Font.BOLD, 20)); // 한글 폰트 강제 지정
         backBtn.setPreferredSize(new Dimension(250, 60));
-        backBtn.addActionListener(e -> mainFrame.showPanel(CrazyArcade_UI.PANEL_MENU));
+        backBtn.addActionListener(e -> {
+            GameSettings.save();
+            mainFrame.showPanel(CrazyArcade_UI.PANEL_MENU);
+        });
 
         bottomPanel.add(backBtn);
         add(bottomPanel, BorderLayout.SOUTH);
@@ -346,12 +1144,107 @@ class SettingsPanel extends JPanel {
 
         JSlider sfxSlider = createBananaSlider(GameSettings.sfxVolume);
         sfxSlider.setBounds(350, 170, 300, 60);
-        sfxSlider.addChangeListener(e -> GameSettings.sfxVolume = sfxSlider.getValue());
+        sfxSlider.addChangeListener(e -> {
+            GameSettings.sfxVolume = sfxSlider.getValue();
+            AudioMixer.getInstance().setSfxVolume(sfxSlider.getValue());
+        });
         panel.add(sfxSlider);
 
         return panel;
     }
 
+    // --- 화면 패널 (전체 화면 / 해상도 / 확대 필터) ---
+    private JPanel createDisplayPanel() {
+        JPanel panel = new JPanel(null);
+        panel.setBackground(COLOR_BG);
+
+        // 해상도 목록: 800x600 이상, 같은 크기/주사율은 하나만 (0번 = 현재 해상도 유지)
+        java.util.List<DisplayMode> modes = new java.util.ArrayList<>();
+        modes.add(null);
+        GraphicsDevice device = GraphicsEnvironment.isHeadless() ? null
+                : GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice();
+        if (device != null) {
+            java.util.Set<String> seen = new java.util.HashSet<>();
+            for (DisplayMode m : device.getDisplayModes()) {
+                if (m.getWidth() >= 800 && m.getHeight() >= 600
+                        && seen.add(m.getWidth() + "x" + m.getHeight() + "@" + m.getRefreshRate()))
+                    modes.add(m);
+            }
+        }
+        int[] modeIndex = { 0 };
+        for (int i = 1; i < modes.size(); i++) {
+            DisplayMode m = modes.get(i);
+            if (m.getWidth() == GameSettings.displayWidth && m.getHeight() == GameSettings.displayHeight
+                    && m.getRefreshRate() == GameSettings.displayRefresh)
+                modeIndex[0] = i;
+        }
+
+        addDisplayLabel(panel, "전체 화면", 60);
+        JButton fullscreenBtn = createBananaButton(GameSettings.fullscreen ? "켜짐" : "꺼짐");
+        fullscreenBtn.setBounds(400, 55, 200, 40);
+        fullscreenBtn.addActionListener(e -> {
+            GameSettings.fullscreen = !GameSettings.fullscreen;
+            fullscreenBtn.setText(GameSettings.fullscreen ? "켜짐" : "꺼짐");
+        });
+        panel.add(fullscreenBtn);
+
+        addDisplayLabel(panel, "해상도", 130);
+        JLabel modeLabel = new JLabel(describeMode(modes.get(modeIndex[0])), SwingConstants.CENTER);
+        modeLabel.setFont(new Font("맑은 고딕", Font.BOLD, 15));
+        modeLabel.setForeground(COLOR_DARK);
+        modeLabel.setBounds(445, 125, 155, 40);
+        panel.add(modeLabel);
+        JButton prevModeBtn = createBananaButton("◀");
+        prevModeBtn.setBounds(400, 125, 45, 40);
+        JButton nextModeBtn = createBananaButton("▶");
+        nextModeBtn.setBounds(600, 125, 45, 40);
+        ActionListener changeMode = e -> {
+            int step = e.getSource() == nextModeBtn ? 1 : modes.size() - 1;
+            modeIndex[0] = (modeIndex[0] + step) % modes.size();
+            DisplayMode m = modes.get(modeIndex[0]);
+            GameSettings.displayWidth = m == null ? 0 : m.getWidth();
+            GameSettings.displayHeight = m == null ? 0 : m.getHeight();
+            GameSettings.displayRefresh = m == null ? 0 : m.getRefreshRate();
+            modeLabel.setText(describeMode(m));
+        };
+        prevModeBtn.addActionListener(changeMode);
+        nextModeBtn.addActionListener(changeMode);
+        panel.add(prevModeBtn);
+        panel.add(nextModeBtn);
+
+        addDisplayLabel(panel, "확대 필터", 200);
+        JButton filterBtn = createBananaButton(GameSettings.smoothScaling ? "부드럽게 (Bilinear)" : "선명하게 (Nearest)");
+        filterBtn.setBounds(400, 195, 200, 40);
+        filterBtn.addActionListener(e -> {
+            GameSettings.smoothScaling = !GameSettings.smoothScaling;
+            filterBtn.setText(GameSettings.smoothScaling ? "부드럽게 (Bilinear)" : "선명하게 (Nearest)");
+        });
+        panel.add(filterBtn);
+
+        JButton applyBtn = createBananaButton("적용");
+        applyBtn.setFont(new Font("맑은 고딕", Font.BOLD, 18));
+        applyBtn.setBounds(300, 270, 150, 45);
+        applyBtn.addActionListener(e -> mainFrame.applyDisplaySettings());
+        panel.add(applyBtn);
+
+        return panel;
+    }
+
+    private void addDisplayLabel(JPanel panel, String text, int y) {
+        JLabel label = new JLabel(text, SwingConstants.LEFT);
+        label.setFont(new Font("맑은 고딕", Font.BOLD, 22));
+        label.setForeground(COLOR_DARK);
+        label.setBounds(150, y, 200, 30);
+        panel.add(label);
+    }
+
+    private static String describeMode(DisplayMode m) {
+        if (m == null)
+            return "현재 해상도";
+        String refresh = m.getRefreshRate() == DisplayMode.REFRESH_RATE_UNKNOWN ? "" : " " + m.getRefreshRate() + "Hz";
+        return m.getWidth() + "x" + m.getHeight() + refresh;
+    }
+
     // [핵심] 바나나 스타일 슬라이더 UI
     private JSlider createBananaSlider(int value) {
         JSlider slider = new JSlider(0, 100, value);
@@ -456,21 +1349,20 @@ class SettingsPanel extends JPanel {
         label.setForeground(new Color(100, 50, 0)); // 진한 갈색
 
         JButton btn = createBananaButton(KeyEvent.getKeyText(currentKey));
+        // 몇 번을 눌러도 입력 대기는 하나뿐 (InputRouter 가 이전 대기를 취소하고 글자를 되돌린다)
         btn.addActionListener(e -> {
+            InputRouter.cancelCapture(); // 같은 버튼을 다시 눌렀으면 여기서 원래 글자로 돌아온다
+            String previous = btn.getText();
             btn.setText("입력...");
-            btn.addKeyListener(new KeyAdapter() {
-                @Override
-                public void keyPressed(KeyEvent k) {
-                    int keyCode = k.getKeyCode();
-                    callback.update(keyCode);
-                    btn.setText(KeyEvent.getKeyText(keyCode));
-                    btn.removeKeyListener(this);
-                }
-            });
+            InputRouter.beginCapture(keyCode -> {
+                callback.update(keyCode);
+                btn.setText(KeyEvent.getKeyText(keyCode));
+            }, () -> btn.setText(previous));
         });
 
         parent.add(label);
         parent.add(btn);
+        keyButtons.add(btn);
     }
 
     // [핵심] 바나나 스타일 버튼 (노란 배경 + 갈색 테두리)
@@ -514,7 +1406,7 @@ class SettingsPanel extends JPanel {
 // ========================================================
 // 3. 가이드 패널
 // ========================================================
-class GuidePanel extends JPanel {
+class GuidePanel extends JPanel implements ScreenAssets {
     private static final int PANEL_WIDTH = 800;
     private static final int PANEL_HEIGHT = 600;
     private Image guideImage;
@@ -526,24 +1418,22 @@ class GuidePanel extends JPanel {
         setLayout(null);
         setBackground(ThemeColors.BG);
 
-        // [수정된 부분 시작] 클래스 로더를 이용한 이미지 로드
-        URL guideUrl = getClass().getResource("/res/game play.png");
-        if (guideUrl != null) {
-            ImageIcon icon = new ImageIcon(guideUrl);
-            guideImage = icon.getImage();
-        } else {
-            // 이미지 로드 실패 시 디버깅 메시지 출력
-            System.err.println("GuidePanel: Failed to load resource at /res/game play.png");
-            guideImage = null; // paintComponent에서 실패 처리
-        }
-        // [수정된 부분 끝]
-
         JButton backBtn = createThemedButton("홈으로");
         backBtn.setBounds(300, 520, 200, 50);
         backBtn.addActionListener(e -> mainFrame.showPanel(CrazyArcade_UI.PANEL_MENU));
         add(backBtn);
     }
 
+    @Override
+    public void loadAssets(ScreenLoad scope) {
+        if (guideImage != null)
+            return;
+        scope.fork(() -> AssetLoader.loadImage("game play.png"), img -> {
+            guideImage = img;
+            repaint();
+        });
+    }
+
     private JButton createThemedButton(String text) {
         JButton btn = new JButton(text) {
             @Override
@@ -599,7 +1489,7 @@ class GuidePanel extends JPanel {
 // ========================================================
 // 4. 크레딧 패널
 // ========================================================
-class CreditsPanel extends JPanel {
+class CreditsPanel extends JPanel implements ScreenAssets {
     private static final int PANEL_WIDTH = 800;
     private static final int PANEL_HEIGHT = 600;
     private CrazyArcade_UI mainFrame;
@@ -630,18 +1520,6 @@ class CreditsPanel extends JPanel {
         setPreferredSize(new Dimension(PANEL_WIDTH, PANEL_HEIGHT));
         setLayout(null);
 
-        // [수정된 부분 시작] 클래스 로더를 이용한 이미지 로드
-        URL creditsUrl = getClass().getResource("/res/creditss.png");
-        if (creditsUrl != null) {
-            ImageIcon icon = new ImageIcon(creditsUrl);
-            backgroundImage = icon.getImage();
-        } else {
-            // 이미지 로드 실패 시 디버깅 메시지 출력
-            System.err.println("CreditsPanel: Failed to load resource at /res/creditss.png");
-            backgroundImage = null; // paintComponent에서 실패 처리
-        }
-        // [수정된 부분 끝]
-
         int viewportHeight = 500;
         scrollContainer = new JPanel();
         scrollContainer.setLayout(null);
@@ -712,6 +1590,16 @@ class CreditsPanel extends JPanel {
         }
     }
 
+    @Override
+    public void loadAssets(ScreenLoad scope) {
+        if (backgroundImage != null)
+            return;
+        scope.fork(() -> AssetLoader.loadImage("creditss.png"), img -> {
+            backgroundImage = img;
+            repaint();
+        });
+    }
+
     public void startScrolling() {
         scrollY = 500;
         textPanel.setLocation(0, scrollY);
@@ -726,9 +1614,14 @@ class CreditsPanel extends JPanel {
 // ========================================================
 // 5. 대기실 (Lobby) 화면
 // ========================================================
-class LobbyPanel extends JPanel {
+class LobbyPanel extends JPanel implements ScreenAssets {
     private CrazyArcade_UI mainFrame;
-    private String selectedCharacter = "배찌"; // 기본 선택 캐릭터
+    private final java.util.List<CharacterCard> cards = new java.util.ArrayList<>();
+    private java.util.function.Consumer<ScreenLoad> refreshMap;
+    // maps 폴더 목록은 로비에 들어올 때 I/O 스레드에서 읽어 채운다 (EDT 전용)
+    private String[] mapFiles = new String[0];
+    private int mapIndex;
+    private JTextArea statsArea;
 
     public LobbyPanel(CrazyArcade_UI mainFrame) {
         this.mainFrame = mainFrame;
@@ -744,33 +1637,37 @@ class LobbyPanel extends JPanel {
         JPanel charPanel = createPanel("캐릭터 선택", 30, 80, 250, 400);
 
         // 배찌 캐릭터 카드
-        JPanel bazziCard = createCharacterCard("배찌", "/res/배찌.png");
+        CharacterCard bazziCard = createCharacterCard("배찌", "배찌.png");
         bazziCard.setBounds(15, 40, 220, 160);
         charPanel.add(bazziCard);
 
         // 다오 캐릭터 카드
-        JPanel daoCard = createCharacterCard("다오", "/res/다오.png");
+        CharacterCard daoCard = createCharacterCard("다오", "다오.png");
         daoCard.setBounds(15, 210, 220, 160);
         charPanel.add(daoCard);
 
         // 캐릭터 선택 상호 배타적 처리
         bazziCard.addMouseListener(new MouseAdapter() {
             public void mouseClicked(MouseEvent e) {
-                selectedCharacter = "배찌";
+                GameSettings.character = "배찌";
+                GameSettings.save();
                 bazziCard.setBorder(BorderFactory.createLineBorder(ThemeColors.ACCENT, 4));
                 daoCard.setBorder(BorderFactory.createLineBorder(ThemeColors.DARK, 2));
             }
         });
         daoCard.addMouseListener(new MouseAdapter() {
             public void mouseClicked(MouseEvent e) {
-                selectedCharacter = "우니";
+                GameSettings.character = "다오";
+                GameSettings.save();
                 daoCard.setBorder(BorderFactory.createLineBorder(ThemeColors.ACCENT, 4));
                 bazziCard.setBorder(BorderFactory.createLineBorder(ThemeColors.DARK, 2));
             }
         });
 
-        // 기본 선택: 배찌
-        bazziCard.setBorder(BorderFactory.createLineBorder(ThemeColors.ACCENT, 4));
+        // 저장된 선택 (기본: 배찌)
+        boolean dao = "다오".equals(GameSettings.character);
+        bazziCard.setBorder(BorderFactory.createLineBorder(dao ? ThemeColors.DARK : ThemeColors.ACCENT, dao ? 2 : 4));
+        daoCard.setBorder(BorderFactory.createLineBorder(dao ? ThemeColors.ACCENT : ThemeColors.DARK, dao ? 4 : 2));
 
         add(charPanel);
 
@@ -778,8 +1675,51 @@ class LobbyPanel extends JPanel {
         JLabel mapText = new JLabel("맵: 숲속마을 01");
         mapText.setFont(new Font("맑은 고딕", Font.BOLD, 20));
         mapText.setForeground(ThemeColors.TEXT);
-        mapText.setBounds(20, 80, 300, 30);
+        mapText.setBounds(20, 80, 230, 30);
         mapPanel.add(mapText);
+
+        // 맵 미리보기 (MapCache 에서 가져오므로 맵을 바꿔도 바로 표시됨)
+        JLabel mapPreview = new JLabel();
+        mapPreview.setBounds(260, 36, 180, 156);
+        mapPreview.setBorder(BorderFactory.createLineBorder(ThemeColors.DARK, 1));
+        mapPanel.add(mapPreview);
+
+        // 맵 파일은 로비 화면의 로딩 범위 안에서 I/O 스레드로 읽는다 (화면을 떠나면 취소되고 결과도 버려짐)
+        java.util.function.Consumer<ScreenLoad> loadMap = scope -> {
+            if (mapFiles.length == 0)
+                return;
+            String fileName = mapFiles[mapIndex];
+            GameSettings.selectedMap = fileName;
+            scope.fork(() -> {
+                MapData map = MapCache.get(fileName);
+                return map != null ? new Object[] { map.name, MapCache.preview(fileName) } : null;
+            }, result -> {
+                if (!fileName.equals(GameSettings.selectedMap))
+                    return; // 그 사이 다른 맵으로 넘어감
+                mapText.setText("맵: " + (result != null ? result[0] : fileName));
+                java.awt.image.BufferedImage img = result != null ? (java.awt.image.BufferedImage) result[1] : null;
+                mapPreview.setIcon(img != null ? new ImageIcon(img) : null);
+            });
+        };
+        refreshMap = loadMap;
+        // ◀ ▶ 는 이미 열려 있는 로비 범위에 작업을 더한다 (봉인 뒤에 더한 작업은 끝나는 대로 따로 전달)
+        Runnable updateMap = () -> loadMap.accept(mainFrame.getScreenLoad());
+        JButton prevMapBtn = createThemedButton("◀", 20, 130, 50, 35);
+        prevMapBtn.addActionListener(e -> {
+            if (mapFiles.length > 0) {
+                mapIndex = (mapIndex + mapFiles.length - 1) % mapFiles.length;
+                updateMap.run();
+            }
+        });
+        mapPanel.add(prevMapBtn);
+        JButton nextMapBtn = createThemedButton("▶", 80, 130, 50, 35);
+        nextMapBtn.addActionListener(e -> {
+            if (mapFiles.length > 0) {
+                mapIndex = (mapIndex + 1) % mapFiles.length;
+                updateMap.run();
+            }
+        });
+        mapPanel.add(nextMapBtn);
         add(mapPanel);
 
         JPanel chatPanel = createPanel("채팅", 300, 300, 450, 180);
@@ -807,7 +1747,7 @@ class LobbyPanel extends JPanel {
         sendBtn.addActionListener(e -> {
             String msg = inputField.getText().trim();
             if (!msg.isEmpty()) {
-                chatArea.append(selectedCharacter + ": " + msg + "\n");
+                chatArea.append(GameSettings.character + ": " + msg + "\n");
                 inputField.setText("");
                 chatArea.setCaretPosition(chatArea.getDocument().getLength());
             }
@@ -817,12 +1757,57 @@ class LobbyPanel extends JPanel {
         inputField.addActionListener(e -> sendBtn.doClick());
 
         chatPanel.add(sendBtn);
+
+        // 전적 보기: 채팅 자리에 MatchStats 요약을 띄운다 (색인만 읽으므로 즉시 표시)
+        statsArea = new JTextArea();
+        statsArea.setEditable(false);
+        statsArea.setFont(new Font("맑은 고딕", Font.PLAIN, 13));
+        statsArea.setBackground(new Color(255, 255, 250));
+        JScrollPane statsScroll = new JScrollPane(statsArea);
+        statsScroll.setBounds(10, 30, 430, 140);
+        statsScroll.setBorder(BorderFactory.createLineBorder(ThemeColors.DARK, 1));
+        statsScroll.setVisible(false);
+        chatPanel.add(statsScroll);
+
+        JButton statsBtn = createThemedButton("전적", 370, 4, 70, 24);
+        statsBtn.addActionListener(e -> {
+            boolean show = !statsScroll.isVisible();
+            if (show)
+                refreshStats();
+            statsScroll.setVisible(show);
+            chatScroll.setVisible(!show);
+            inputField.setVisible(!show);
+            sendBtn.setVisible(!show);
+            statsBtn.setText(show ? "채팅" : "전적");
+        });
+        chatPanel.add(statsBtn);
         add(chatPanel);
 
         JButton backBtn = createThemedButton("뒤로", 30, 500, 150, 50);
         backBtn.addActionListener(e -> mainFrame.showPanel(CrazyArcade_UI.PANEL_MENU));
         add(backBtn);
 
+        // CPU 상대 수 선택
+        JLabel botLabel = new JLabel("CPU: " + GameSettings.botCount + "명", SwingConstants.CENTER);
+        botLabel.setFont(new Font("맑은 고딕", Font.BOLD, 18));
+        botLabel.setForeground(ThemeColors.DARK);
+        botLabel.setBounds(340, 505, 120, 40);
+        add(botLabel);
+
+        JButton botMinusBtn = createThemedButton("-", 290, 505, 45, 40);
+        botMinusBtn.addActionListener(e -> {
+            GameSettings.botCount = Math.max(0, GameSettings.botCount - 1);
+            botLabel.setText("CPU: " + GameSettings.botCount + "명");
+        });
+        add(botMinusBtn);
+
+        JButton botPlusBtn = createThemedButton("+", 465, 505, 45, 40);
+        botPlusBtn.addActionListener(e -> {
+            GameSettings.botCount = Math.min(GameBoard.MAX_PLAYERS - 2, GameSettings.botCount + 1);
+            botLabel.setText("CPU: " + GameSettings.botCount + "명");
+        });
+        add(botPlusBtn);
+
         JButton startBtn = createStartButton("게임 시작!");
         startBtn.setBounds(600, 500, 150, 50);
         startBtn.addActionListener(e -> mainFrame.showPanel(CrazyArcade_UI.PANEL_GAME));
@@ -884,19 +1869,73 @@ class LobbyPanel extends JPanel {
         return btn;
     }
 
-    private JPanel createCharacterCard(String name, String imagePath) {
-        JPanel card = new JPanel() {
-            private Image charImage;
-            {
-                URL imgUrl = getClass().getResource(imagePath);
-                if (imgUrl != null) {
-                    charImage = new ImageIcon(imgUrl).getImage();
-                }
-            }
-
-            @Override
-            protected void paintComponent(Graphics g) {
-                super.paintComponent(g);
+    // 캐릭터 이미지와 맵 목록은 로비에 들어올 때 한 번에 읽고, 목록이 오면 선택된 맵을 읽는다
+    @Override
+    public void loadAssets(ScreenLoad scope) {
+        for (CharacterCard card : cards) {
+            if (card.charImage != null)
+                continue;
+            scope.fork(() -> AssetLoader.loadImage(card.imagePath), img -> {
+                card.charImage = img;
+                card.repaint();
+            });
+        }
+        scope.fork(MapCache::list, files -> {
+            mapFiles = files;
+            mapIndex = Math.max(0, java.util.Arrays.asList(files).indexOf(GameSettings.selectedMap));
+            refreshMap.accept(scope);
+        });
+        refreshStats();
+        for (CharacterCard card : cards)
+            card.repaint();
+    }
+
+    private void refreshStats() {
+        if (!MatchLog.isLoaded()) {
+            statsArea.setText("경기 기록을 불러오는 중...");
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        int total = MatchStats.getTotal();
+        sb.append(String.format("총 %d판  (1P %d승 / 2P %d승 / CPU %d승 / 무승부 %d)%n", total,
+                MatchStats.getSlotWins(0), MatchStats.getSlotWins(1), MatchStats.getSlotWins(2), MatchStats.getDraws()));
+        for (int k = 0; k < MatchStats.CHARACTERS.length; k++) {
+            int games = MatchStats.getGames(k);
+            int wins = MatchStats.getWins(k);
+            sb.append(String.format("%s  %d전 %d승  승률 %d%%%n", MatchStats.CHARACTERS[k], games, wins,
+                    games > 0 ? wins * 100 / games : 0));
+        }
+        MatchLog.Record[] fastest = MatchStats.getFastestWins();
+        if (fastest.length > 0)
+            sb.append("- 가장 빠른 승리 -\n");
+        java.text.SimpleDateFormat date = new java.text.SimpleDateFormat("MM-dd HH:mm");
+        for (int k = 0; k < fastest.length; k++) {
+            MatchLog.Record r = fastest[k];
+            long seconds = r.ticks / 60;
+            sb.append(String.format("%d. %s  %d:%02d  %s  %s%n", k + 1, MatchStats.winnerLabel(r.winner),
+                    seconds / 60, seconds % 60, MatchStats.mapName(r.mapHash),
+                    date.format(new java.util.Date(r.timestamp))));
+        }
+        statsArea.setText(sb.toString());
+        statsArea.setCaretPosition(0);
+    }
+
+    private static class CharacterCard extends JPanel {
+        final String imagePath;
+        Image charImage;
+
+        CharacterCard(String imagePath) {
+            this.imagePath = imagePath;
+        }
+    }
+
+    private static final Font STATS_FONT = new Font("맑은 고딕", Font.PLAIN, 12);
+
+    private CharacterCard createCharacterCard(String name, String imagePath) {
+        CharacterCard card = new CharacterCard(imagePath) {
+            @Override
+            protected void paintComponent(Graphics g) {
+                super.paintComponent(g);
                 Graphics2D g2 = (Graphics2D) g;
                 g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
@@ -917,11 +1956,19 @@ class LobbyPanel extends JPanel {
                 FontMetrics fm = g2.getFontMetrics();
                 int textX = (getWidth() - fm.stringWidth(name)) / 2;
                 g2.drawString(name, textX, getHeight() - 20);
+
+                // 이 캐릭터로 1P 가 거둔 전적
+                if (MatchLog.isLoaded()) {
+                    int character = MatchStats.characterIndex(name);
+                    g2.setFont(STATS_FONT);
+                    g2.drawString(MatchStats.getGames(character) + "전 " + MatchStats.getWins(character) + "승", 8, 18);
+                }
             }
         };
         card.setOpaque(false);
         card.setBorder(BorderFactory.createLineBorder(ThemeColors.DARK, 2));
         card.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        cards.add(card);
         return card;
     }
 
@@ -951,208 +1998,4515 @@ class LobbyPanel extends JPanel {
 }
 
 // ========================================================
-// 6. 게임 패널 플레이스홀더
+// [핵심] 입력 라우터 - 창 전체의 키 입력을 KeyEventDispatcher 하나로 받아 나눠 준다
 // ========================================================
-class GamePanelPlaceholder extends JPanel {
-    private CrazyArcade_UI mainFrame;
+// 포커스가 어디 있든 먼저 여기를 거친다. 순서: 키 설정 입력 대기 -> 단축키 -> 게임 입력 표.
+// 컴포넌트마다 KeyListener 를 붙였다 떼지 않으므로 화면을 오가도 리스너가 쌓이지 않고,
+// 키 하나 처리 비용은 배열 접근 몇 번으로 일정하다.
+class InputRouter {
+    public static final int KEY_COUNT = 1024;
+
+    // EDT 가 쓰고 게임 스레드가 읽는 키 상태 (게임 화면일 때만 채운다)
+    private static final java.util.concurrent.atomic.AtomicIntegerArray down = new java.util.concurrent.atomic.AtomicIntegerArray(
+            KEY_COUNT);
+    private static volatile boolean gameInput;
+    // 아래는 EDT 전용
+    private static final java.util.function.BooleanSupplier[] hotkeys = new java.util.function.BooleanSupplier[KEY_COUNT];
+    private static java.util.function.IntConsumer captureTarget;
+    private static Runnable captureCancel;
+    private static boolean installed;
+
+    public static void install() {
+        if (installed)
+            return;
+        installed = true;
+        KeyboardFocusManager.getCurrentKeyboardFocusManager().addKeyEventDispatcher(InputRouter::dispatch);
+    }
 
-    public GamePanelPlaceholder(CrazyArcade_UI mainFrame) {
-        this.mainFrame = mainFrame;
-        setLayout(null);
-        setBackground(Color.BLACK);
+    // 어느 화면에서든 동작하는 단축키. action 이 false 를 돌려주면 (지금 화면에선 할 일 없음) 키를 그대로 흘려보낸다
+    public static void setHotkey(int keyCode, java.util.function.BooleanSupplier action) {
+        hotkeys[keyCode] = action;
+    }
+
+    // 다음에 눌리는 키 하나를 onKey 로 넘긴다. ESC 나 다른 입력 대기가 시작되면 onCancel
+    public static void beginCapture(java.util.function.IntConsumer onKey, Runnable onCancel) {
+        cancelCapture();
+        captureTarget = onKey;
+        captureCancel = onCancel;
+    }
 
-        JLabel infoLabel = new JLabel("TEAM PROJECT: GAME LOGIC AREA");
-        infoLabel.setForeground(Color.GREEN);
-        infoLabel.setFont(new Font("Courier New", Font.BOLD, 30));
-        infoLabel.setBounds(150, 200, 600, 50);
-        add(infoLabel);
+    public static void cancelCapture() {
+        Runnable cancel = captureCancel;
+        captureTarget = null;
+        captureCancel = null;
+        if (cancel != null)
+            cancel.run();
+    }
 
-        JLabel subLabel = new JLabel("팀원들이 작성한 게임 패널 코드가 들어갈 자리입니다.");
-        subLabel.setForeground(Color.WHITE);
-        subLabel.setFont(new Font("맑은 고딕", Font.PLAIN, 20));
-        subLabel.setBounds(180, 260, 500, 30);
-        add(subLabel);
+    public static boolean isCapturing() {
+        return captureTarget != null;
+    }
 
-        JLabel guideLabel = new JLabel("Press [ESC] to return to Lobby");
-        guideLabel.setForeground(Color.YELLOW);
-        guideLabel.setBounds(300, 400, 300, 30);
-        add(guideLabel);
+    // 게임 화면에 들어가고 나갈 때 호출. 어느 쪽이든 눌려 있던 키는 지운다
+    public static void setGameInput(boolean on) {
+        gameInput = on;
+        clear();
+    }
 
-        setFocusable(true);
-        addKeyListener(new KeyAdapter() {
-            @Override
-            public void keyPressed(KeyEvent e) {
-                if (e.getKeyCode() == KeyEvent.VK_ESCAPE) {
-                    mainFrame.showPanel(CrazyArcade_UI.PANEL_LOBBY);
+    public static void clear() {
+        for (int k = 0; k < KEY_COUNT; k++)
+            down.set(k, 0);
+    }
+
+    public static boolean isDown(int keyCode) {
+        return keyCode >= 0 && keyCode < KEY_COUNT && down.get(keyCode) != 0;
+    }
+
+    // 눌린 상태를 읽으면서 지운다 (누르고 있어도 한 번만 동작하는 키용)
+    public static boolean consume(int keyCode) {
+        return keyCode >= 0 && keyCode < KEY_COUNT && down.compareAndSet(keyCode, 1, 0);
+    }
+
+    // true 를 돌려주면 포커스를 가진 컴포넌트에는 전달되지 않는다
+    static boolean dispatch(KeyEvent e) {
+        int code = e.getKeyCode();
+        if (code <= 0 || code >= KEY_COUNT)
+            return false;
+        if (e.getID() == KeyEvent.KEY_PRESSED) {
+            if (captureTarget != null) {
+                java.util.function.IntConsumer target = captureTarget;
+                if (code == KeyEvent.VK_ESCAPE) {
+                    cancelCapture();
+                } else {
+                    captureTarget = null;
+                    captureCancel = null;
+                    target.accept(code);
                 }
+                return true;
             }
-        });
+            java.util.function.BooleanSupplier hotkey = hotkeys[code];
+            if (hotkey != null && hotkey.getAsBoolean())
+                return true;
+            if (gameInput) {
+                down.set(code, 1);
+                return true;
+            }
+        } else if (e.getID() == KeyEvent.KEY_RELEASED && gameInput) {
+            down.set(code, 0);
+            return true;
+        }
+        return false;
     }
 }
 
 // ========================================================
-// 7. 스플래시 (Splash) 화면 - splash2.wav 효과음 재생
+// 6. 게임 패널 플레이스홀더
 // ========================================================
-class SplashPanel extends JPanel {
-    private static final int PANEL_WIDTH = 800;
-    private static final int PANEL_HEIGHT = 600;
+class GamePanelPlaceholder extends JPanel {
+    private static final int TILE_SIZE = 40;
+    private static final int BOARD_X = (800 - GameBoard.COLS * TILE_SIZE) / 2;
+    private static final int BOARD_Y = 20;
+    private static final long TICK_NANOS = 1_000_000_000L / 60; // 60Hz 게임 틱
+    private static final Color[] PLAYER_COLORS = {
+            new Color(230, 60, 60), new Color(60, 110, 230), new Color(60, 170, 60), new Color(170, 80, 200),
+            new Color(240, 140, 20), new Color(30, 170, 170), new Color(120, 120, 120), new Color(200, 60, 140) };
+    // 그리기 중에 객체를 만들지 않도록 색/폰트/이름표는 미리 준비
+    private static final Color BLAST_COLOR = new Color(120, 190, 255);
+    private static final Color BALLOON_COLOR = new Color(40, 100, 220);
+    // 아이템 id 순서: 없음, 물풍선+, 물줄기+, 속도+, 바늘
+    private static final Color[] ITEM_COLORS = { null, new Color(60, 120, 240), new Color(240, 200, 40),
+            new Color(90, 200, 90), new Color(200, 200, 210) };
+    private static final String[] ITEM_LABELS = { "", "B", "P", "S", "N" };
+    private static final Font HUD_FONT = new Font("맑은 고딕", Font.BOLD, 13);
+    private static final Font TAG_FONT = new Font("맑은 고딕", Font.BOLD, 12);
+    private static final Font POPUP_FONT = new Font("맑은 고딕", Font.BOLD, 16);
+    private static final Font BANNER_FONT = new Font("맑은 고딕", Font.BOLD, 40);
+    static final String[] PLAYER_TAGS = new String[GameBoard.MAX_PLAYERS];
+    static {
+        for (int p = 0; p < PLAYER_TAGS.length; p++)
+            PLAYER_TAGS[p] = (p + 1) + "P";
+    }
+
     private CrazyArcade_UI mainFrame;
-    private Timer transitionTimer;
-    private float alpha = 0f; // 페이드 인 효과용
-    private Timer fadeTimer;
-    private Image splashImage;
+    // board / effects / botDirector 는 시뮬레이션 스레드만 만진다 (라운드 시작 전/종료 후에는 EDT)
+    private final GameBoard board = new GameBoard();
+    private final GameEffects effects = new GameEffects(TILE_SIZE, BOARD_X, BOARD_Y);
+    private final BotDirector botDirector = new BotDirector();
+    // 시뮬레이션 -> 렌더링: 세 장의 스냅샷을 돌려 쓰며 가장 최근에 완성된 것만 그린다
+    private final TripleBuffer<GameSnapshot> snapshots = new TripleBuffer<>(GameSnapshot::new);
+    private Thread simThread;
+    private volatile boolean running;
+    // 관전 스레드는 자기 세대 번호가 바뀌면 멈춘다 (다음 startRound 의 running 과 섞이지 않도록)
+    private volatile int spectateGeneration;
+    private volatile java.nio.channels.SocketChannel spectateChannel;
+    private int roundEndDelay;
 
-    public SplashPanel(CrazyArcade_UI mainFrame) {
+    public GamePanelPlaceholder(CrazyArcade_UI mainFrame) {
         this.mainFrame = mainFrame;
-        setPreferredSize(new Dimension(PANEL_WIDTH, PANEL_HEIGHT));
         setLayout(null);
         setBackground(Color.BLACK);
 
-        // 스플래시 이미지 로드 시도 (res/splash.png)
-        URL splashUrl = getClass().getResource("/res/splash.png");
-        if (splashUrl != null) {
-            splashImage = new ImageIcon(splashUrl).getImage();
-        }
-
-        // 마우스 클릭 시 바로 메뉴로 이동
-        addMouseListener(new MouseAdapter() {
-            @Override
-            public void mouseClicked(MouseEvent e) {
-                goToMenu();
-            }
-        });
+        JLabel guideLabel = new JLabel("Press [ESC] to return to Lobby");
+        guideLabel.setForeground(Color.YELLOW);
+        guideLabel.setBounds(300, 560, 300, 30);
+        add(guideLabel);
 
-        // 키보드 입력 시 바로 메뉴로 이동
         setFocusable(true);
-        addKeyListener(new KeyAdapter() {
-            @Override
-            public void keyPressed(KeyEvent e) {
-                goToMenu();
-            }
-        });
+        // 키 입력은 InputRouter 의 게임 입력 표에서 읽는다 (ESC 는 CrazyArcade_UI 의 단축키)
     }
 
-    // 패널이 화면에 표시될 때 호출
-    @Override
-    public void addNotify() {
-        super.addNotify();
-        requestFocusInWindow();
-        startSplash();
+    // 게임 화면으로 들어올 때 호출: 사람 2명 + 로비에서 고른 CPU 수로 라운드 시작
+    public void startRound() {
+        stopRound();
+        MapData map = MapCache.get(GameSettings.selectedMap);
+        if (map != null)
+            board.load(map);
+        else
+            board.generateDefault(System.nanoTime());
+        board.reset(2, GameSettings.botCount, System.nanoTime());
+        botDirector.attach(board);
+        InputRouter.clear();
+        roundEndDelay = 0;
+        effects.clear();
+        publishSnapshot(); // 첫 프레임용 (스레드 시작 전이라 EDT 에서 써도 안전)
+        SpectatorServer.roundStarted();
+
+        running = true;
+        simThread = new Thread(this::runLoop, "game-sim");
+        simThread.setDaemon(true);
+        simThread.setPriority(Thread.NORM_PRIORITY + 1);
+        simThread.start();
     }
 
-    private void startSplash() {
-        // splash2.wav 효과음 재생
-        playSplashSound();
-
-        // 페이드 인 효과
-        alpha = 0f;
-        fadeTimer = new Timer(30, e -> {
-            alpha += 0.05f;
-            if (alpha >= 1.0f) {
-                alpha = 1.0f;
-                fadeTimer.stop();
+    public void stopRound() {
+        running = false;
+        spectateGeneration++;
+        closeSpectateChannel(); // read() 에 막혀 있는 관전 스레드를 바로 깨운다
+        Thread t = simThread;
+        if (t == null)
+            return;
+        simThread = null;
+        java.util.concurrent.locks.LockSupport.unpark(t);
+        if (t != Thread.currentThread()) {
+            try {
+                t.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
-            repaint();
-        });
-        fadeTimer.start();
+            if (t.isAlive())
+                System.err.println("시뮬레이션 스레드가 1초 안에 끝나지 않았습니다: " + t.getName());
+        }
+        // effects 는 시뮬레이션 스레드가 끝나기 직전에 스스로 돌려준다 (runLoop)
+    }
 
-        // 3초 후 메뉴 화면으로 자동 전환
-        transitionTimer = new Timer(3000, e -> goToMenu());
-        transitionTimer.setRepeats(false);
-        transitionTimer.start();
+    // 관전 모드: 시뮬레이션 대신 중계 프레임을 받아 같은 렌더러로 그린다
+    public void startSpectating(String address) {
+        stopRound();
+        int colon = address.lastIndexOf(':');
+        String host = colon > 0 ? address.substring(0, colon) : "localhost";
+        int port = Integer.parseInt(address.substring(colon + 1));
+        int generation = spectateGeneration;
+        simThread = new Thread(() -> spectateLoop(host, port, generation), "spectator-client");
+        simThread.setDaemon(true);
+        simThread.start();
     }
 
-    private void playSplashSound() {
-        try {
-            String soundPath = System.getProperty("user.dir") + File.separator + "splash" + File.separator
-                    + "splash2.wav";
-            File soundFile = new File(soundPath);
-            if (soundFile.exists()) {
-                AudioInputStream audioStream = AudioSystem.getAudioInputStream(soundFile);
-                Clip clip = AudioSystem.getClip();
-                clip.open(audioStream);
-
-                // SFX 볼륨 적용
-                if (clip.isControlSupported(FloatControl.Type.MASTER_GAIN)) {
-                    FloatControl volumeControl = (FloatControl) clip.getControl(FloatControl.Type.MASTER_GAIN);
-                    float min = volumeControl.getMinimum();
-                    float max = volumeControl.getMaximum();
-                    float gain = min + (max - min) * (GameSettings.sfxVolume / 100.0f);
-                    volumeControl.setValue(gain);
+    private void spectateLoop(String host, int port, int generation) {
+        GameSnapshot mirror = new GameSnapshot();
+        java.nio.ByteBuffer frame = java.nio.ByteBuffer.allocate(SpectatorServer.MAX_FRAME);
+        while (generation == spectateGeneration) {
+            try (java.nio.channels.SocketChannel ch = java.nio.channels.SocketChannel.open()) {
+                spectateChannel = ch;
+                if (generation != spectateGeneration)
+                    return; // stopRound 가 채널을 저장하기 전에 지나갔다
+                ch.connect(new java.net.InetSocketAddress(host, port));
+                boolean haveKeyframe = false;
+                while (generation == spectateGeneration) {
+                    frame.clear().limit(4);
+                    readFully(ch, frame);
+                    int length = frame.getInt(0);
+                    if (length <= 0 || length > frame.capacity())
+                        throw new java.io.IOException("잘못된 중계 프레임 길이: " + length);
+                    frame.clear().limit(length);
+                    readFully(ch, frame);
+                    frame.flip();
+                    if (!SpectatorServer.apply(frame, mirror, haveKeyframe))
+                        continue;
+                    haveKeyframe = true;
+                    if (generation != spectateGeneration)
+                        return;
+                    snapshots.back().copyFrom(mirror);
+                    snapshots.publish();
+                    repaint();
                 }
+            } catch (java.io.IOException e) {
+                if (generation != spectateGeneration)
+                    return;
+                System.err.println("관전 연결 실패, 2초 후 다시 시도: " + e.getMessage());
+                java.util.concurrent.locks.LockSupport.parkNanos(2_000_000_000L); // stopRound 의 unpark 로 깨어남
+            }
+        }
+    }
 
-                clip.start();
-                System.out.println("Splash 효과음 재생: " + soundPath);
-            } else {
-                System.err.println("Splash 효과음 파일을 찾을 수 없습니다: " + soundPath);
+    private void closeSpectateChannel() {
+        java.nio.channels.SocketChannel ch = spectateChannel;
+        spectateChannel = null;
+        if (ch == null)
+            return;
+        try {
+            ch.close();
+        } catch (java.io.IOException e) {
+            System.err.println("관전 연결 닫기 실패: " + e.getMessage());
+        }
+    }
+
+    private static void readFully(java.nio.channels.SocketChannel ch, java.nio.ByteBuffer buf) throws java.io.IOException {
+        while (buf.hasRemaining())
+            if (ch.read(buf) < 0)
+                throw new java.io.EOFException("중계가 끊어졌습니다");
+    }
+
+    // 시뮬레이션 스레드: 고정 간격으로 틱을 돌리고, 렌더링이 느려도 기다리지 않는다
+    private void runLoop() {
+        long next = System.nanoTime();
+        try {
+            while (running) {
+                gameTick();
+                next += TICK_NANOS;
+                long wait = next - System.nanoTime();
+                if (wait > 0)
+                    java.util.concurrent.locks.LockSupport.parkNanos(wait);
+                else if (wait < -5 * TICK_NANOS)
+                    next = System.nanoTime(); // 너무 밀렸으면 따라잡지 말고 기준을 다시 잡는다
             }
-        } catch (Exception e) {
-            System.err.println("Splash 효과음 재생 실패: " + e.getMessage());
+        } finally {
+            // 마지막으로 effects 를 만지는 것이 이 스레드이므로, 회수도 여기서 한다
+            // (EDT 에서 하면 join 이 시간 초과됐을 때 아직 돌고 있는 틱과 겹친다)
+            effects.checkLeaks();
+            effects.clear();
         }
     }
 
-    private void goToMenu() {
-        if (transitionTimer != null) {
-            transitionTimer.stop();
+    private void gameTick() {
+        GameTickEvent event = new GameTickEvent();
+        event.begin();
+        long allocBefore = Metrics.threadAllocatedBytes();
+        long start = System.nanoTime();
+        simulate();
+        effects.spawnFrom(board, PLAYER_COLORS);
+        effects.update();
+        publishSnapshot();
+        SpectatorServer.publish(board, roundEndDelay);
+        Metrics.TICK.record(System.nanoTime() - start);
+        Metrics.tickAllocated(allocBefore, board.entities.liveCount());
+        if (event.shouldCommit()) // 기록하지 않을 때는 aliveCount() 도 계산하지 않는다
+            event.commit(board.tick, board.aliveCount(), botDirector.getDegradedTicks());
+        if (roundEndDelay == -1) {
+            running = false;
+            SwingUtilities.invokeLater(() -> mainFrame.showPanel(CrazyArcade_UI.PANEL_LOBBY));
+            return;
         }
-        if (fadeTimer != null) {
-            fadeTimer.stop();
+        repaint(); // 스레드 안전: EDT 에 다시 그리기 요청만 넣는다
+    }
+
+    private void publishSnapshot() {
+        GameSnapshot snap = snapshots.back();
+        snap.capture(board, roundEndDelay);
+        effects.capture(snap);
+        snapshots.publish();
+    }
+
+    private void simulate() {
+        board.setCommand(0, humanCommand(GameSettings.p1_Up, GameSettings.p1_Down, GameSettings.p1_Left,
+                GameSettings.p1_Right, GameSettings.p1_Bomb));
+        board.setCommand(1, humanCommand(GameSettings.p2_Up, GameSettings.p2_Down, GameSettings.p2_Left,
+                GameSettings.p2_Right, GameSettings.p2_Bomb));
+        botDirector.think();
+        board.tick();
+
+        if (board.aliveCount() <= 1 && roundEndDelay == 0) {
+            roundEndDelay = 180; // 3초 후 로비로
+            recordResult();
         }
-        // BGM 재생 시작
-        mainFrame.startBGM();
-        // 메뉴 화면으로 이동
-        mainFrame.showPanel(CrazyArcade_UI.PANEL_MENU);
+        if (roundEndDelay > 0 && --roundEndDelay == 0)
+            roundEndDelay = -1; // 로비로 돌아갈 차례
     }
 
+    // 라운드 결과를 경기 기록에 넘긴다 (파일 쓰기는 기록 스레드 몫이라 게임 틱을 막지 않음)
+    private void recordResult() {
+        int winner = -1;
+        for (int p = 0; p < board.playerCount; p++)
+            if (board.isAlive(p))
+                winner = p;
+        String map = MapCache.get(GameSettings.selectedMap) != null ? GameSettings.selectedMap : "";
+        MatchLog.record(new MatchLog.Record(System.currentTimeMillis(), board.seed, (int) board.tick,
+                MatchStats.mapHash(map), board.playerCount, board.playerCount - 2, winner,
+                MatchStats.characterIndex(GameSettings.character)));
+    }
+
+    private int humanCommand(int up, int down, int left, int right, int bomb) {
+        int cmd = GameBoard.CMD_NONE;
+        if (InputRouter.isDown(up))
+            cmd = GameBoard.CMD_UP;
+        else if (InputRouter.isDown(down))
+            cmd = GameBoard.CMD_DOWN;
+        else if (InputRouter.isDown(left))
+            cmd = GameBoard.CMD_LEFT;
+        else if (InputRouter.isDown(right))
+            cmd = GameBoard.CMD_RIGHT;
+        if (InputRouter.consume(bomb)) // 누르고 있어도 한 개만 설치
+            cmd |= GameBoard.CMD_BOMB;
+        return cmd;
+    }
+
+    // EDT: 가장 최근 스냅샷만 그린다 (시뮬레이션 상태는 직접 읽지 않음)
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
-        Graphics2D g2 = (Graphics2D) g.create();
+        GameSnapshot snap = snapshots.latest();
+        Graphics2D g2 = (Graphics2D) g;
         g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
 
-        // 배경
-        g2.setColor(Color.BLACK);
-        g2.fillRect(0, 0, getWidth(), getHeight());
+        for (int y = 0; y < GameBoard.ROWS; y++) {
+            for (int x = 0; x < GameBoard.COLS; x++) {
+                int i = GameBoard.index(x, y);
+                int sx = BOARD_X + x * TILE_SIZE, sy = BOARD_Y + y * TILE_SIZE;
+                byte tile = snap.tiles[i];
+                if (tile == GameBoard.TILE_WALL)
+                    g2.setColor(ThemeColors.DARK);
+                else if (tile == GameBoard.TILE_BLOCK)
+                    g2.setColor(ThemeColors.ACCENT);
+                else
+                    g2.setColor(ThemeColors.BG);
+                g2.fillRect(sx, sy, TILE_SIZE, TILE_SIZE);
+            }
+        }
 
-        // 페이드 인 효과 적용
-        g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha));
+        // 바닥의 아이템
+        g2.setFont(TAG_FONT);
+        FontMetrics itemFm = g2.getFontMetrics();
+        for (int i = 0; i < GameBoard.TILE_COUNT; i++) {
+            int item = snap.itemAt[i];
+            if (item <= GameBoard.ITEM_NONE || item >= ITEM_COLORS.length)
+                continue;
+            int sx = BOARD_X + (i % GameBoard.COLS) * TILE_SIZE, sy = BOARD_Y + (i / GameBoard.COLS) * TILE_SIZE;
+            g2.setColor(ITEM_COLORS[item]);
+            g2.fillRoundRect(sx + 10, sy + 10, TILE_SIZE - 20, TILE_SIZE - 20, 8, 8);
+            g2.setColor(Color.BLACK);
+            g2.drawString(ITEM_LABELS[item], sx + (TILE_SIZE - itemFm.stringWidth(ITEM_LABELS[item])) / 2,
+                    sy + TILE_SIZE / 2 + 5);
+        }
 
-        if (splashImage != null) {
-            // 스플래시 이미지가 있으면 표시
-            g2.drawImage(splashImage, 0, 0, getWidth(), getHeight(), this);
-        } else {
-            // 이미지가 없으면 텍스트 로고 표시
-            // 그라데이션 배경
-            GradientPaint gradient = new GradientPaint(
-                    0, 0, new Color(255, 200, 50),
-                    0, getHeight(), new Color(255, 100, 0));
-            g2.setPaint(gradient);
-            g2.fillRect(0, 0, getWidth(), getHeight());
+        // 물줄기 / 물풍선 (엔티티 배열을 순서대로 훑는다)
+        for (int id = 0; id < snap.entityCount; id++) {
+            int sx = BOARD_X + snap.tileX[id] * TILE_SIZE, sy = BOARD_Y + snap.tileY[id] * TILE_SIZE;
+            if ((snap.mask[id] & EntityStore.C_BLAST) != 0) {
+                g2.setColor(BLAST_COLOR);
+                g2.fillRect(sx + 4, sy + 4, TILE_SIZE - 8, TILE_SIZE - 8);
+            } else if ((snap.mask[id] & EntityStore.C_BALLOON) != 0) {
+                g2.setColor(BALLOON_COLOR);
+                g2.fillOval(sx + 6, sy + 6, TILE_SIZE - 12, TILE_SIZE - 12);
+            }
+        }
 
-            // 게임 타이틀
-            g2.setColor(ThemeColors.DARK);
-            g2.setFont(new Font("맑은 고딕", Font.BOLD, 60));
-            String title = "Water Bomb Man";
-            FontMetrics fm = g2.getFontMetrics();
-            int titleX = (getWidth() - fm.stringWidth(title)) / 2;
-            g2.drawString(title, titleX, 250);
+        g2.setFont(TAG_FONT);
+        FontMetrics fm = g2.getFontMetrics();
+        for (int p = 0; p < snap.playerCount; p++) {
+            int mask = snap.mask[p];
+            if ((mask & EntityStore.C_ALIVE) == 0)
+                continue;
+            int sx = BOARD_X + snap.tileX[p] * TILE_SIZE, sy = BOARD_Y + snap.tileY[p] * TILE_SIZE;
+            g2.setColor(PLAYER_COLORS[p]);
+            g2.fillOval(sx + 4, sy + 4, TILE_SIZE - 8, TILE_SIZE - 8);
+            g2.setColor(Color.WHITE);
+            String tag = (mask & EntityStore.C_BOT) != 0 ? "CPU" : PLAYER_TAGS[p];
+            g2.drawString(tag, sx + (TILE_SIZE - fm.stringWidth(tag)) / 2, sy + TILE_SIZE / 2 + 5);
+        }
 
-            // 서브 타이틀
-            g2.setFont(new Font("맑은 고딕", Font.BOLD, 24));
-            String subtitle = "물풍선 대작전!";
-            fm = g2.getFontMetrics();
-            int subX = (getWidth() - fm.stringWidth(subtitle)) / 2;
-            g2.drawString(subtitle, subX, 310);
+        paintEffects(g2, snap);
+        paintInventory(g2, snap, 0, 10, false);
+        paintInventory(g2, snap, 1, 790, true);
+
+        if (snap.roundEndDelay > 0) {
+            g2.setColor(Color.WHITE);
+            g2.setFont(BANNER_FONT);
+            String msg = "라운드 종료!";
+            FontMetrics bannerFm = g2.getFontMetrics();
+            g2.drawString(msg, (getWidth() - bannerFm.stringWidth(msg)) / 2, getHeight() / 2);
         }
+    }
 
-        // 하단 안내 메시지
-        g2.setColor(Color.WHITE);
-        g2.setFont(new Font("맑은 고딕", Font.PLAIN, 16));
-        String hint = "클릭하거나 아무 키나 눌러서 시작";
+    private void paintEffects(Graphics2D g2, GameSnapshot snap) {
+        for (int k = 0; k < snap.particleCount; k++) {
+            g2.setColor(snap.particleColor[k]);
+            g2.fillOval((int) snap.particleX[k] - 2, (int) snap.particleY[k] - 2, 5, 5);
+        }
+        g2.setFont(POPUP_FONT);
         FontMetrics fm = g2.getFontMetrics();
-        int hintX = (getWidth() - fm.stringWidth(hint)) / 2;
-        g2.drawString(hint, hintX, getHeight() - 50);
-        g2.dispose();
+        for (int k = 0; k < snap.popupCount; k++) {
+            String text = snap.popupText[k];
+            g2.setColor(snap.popupColor[k]);
+            g2.drawString(text, (int) snap.popupX[k] - fm.stringWidth(text) / 2, (int) snap.popupY[k]);
+        }
+    }
+
+    // 화면 아래쪽에 사람 플레이어의 능력치 / 바늘 개수 표시
+    private void paintInventory(Graphics2D g2, GameSnapshot snap, int player, int x, boolean alignRight) {
+        if (player >= snap.playerCount || (snap.mask[player] & EntityStore.C_BOT) != 0)
+            return;
+        String text = PLAYER_TAGS[player] + "  물풍선 " + snap.maxBalloons[player] + "  물줄기 " + snap.power[player]
+                + "  속도 " + snap.speed[player] + "  바늘 " + snap.needles[player];
+        g2.setFont(HUD_FONT);
+        g2.setColor(PLAYER_COLORS[player]);
+        int width = g2.getFontMetrics().stringWidth(text);
+        g2.drawString(text, alignRight ? x - width : x, 590);
+    }
+}
+
+// ========================================================
+// [핵심] 게임 스냅샷 - 렌더링에 필요한 상태만 복사해 둔 것 (기본형 배열, 미리 할당)
+// ========================================================
+class GameSnapshot {
+    final byte[] tiles = new byte[GameBoard.TILE_COUNT];
+    final byte[] itemAt = new byte[GameBoard.TILE_COUNT];
+    final int[] mask = new int[EntityStore.CAPACITY];
+    final int[] tileX = new int[EntityStore.CAPACITY];
+    final int[] tileY = new int[EntityStore.CAPACITY];
+    int entityCount;
+    int playerCount;
+    final int[] power = new int[GameBoard.MAX_PLAYERS];
+    final int[] maxBalloons = new int[GameBoard.MAX_PLAYERS];
+    final int[] speed = new int[GameBoard.MAX_PLAYERS];
+    final int[] needles = new int[GameBoard.MAX_PLAYERS];
+    long tick;
+    int roundEndDelay;
+
+    // 화면 효과 (GameEffects.capture 가 채움)
+    final float[] particleX = new float[GameEffects.MAX_PARTICLES];
+    final float[] particleY = new float[GameEffects.MAX_PARTICLES];
+    final Color[] particleColor = new Color[GameEffects.MAX_PARTICLES];
+    int particleCount;
+    final float[] popupX = new float[GameEffects.MAX_POPUPS];
+    final float[] popupY = new float[GameEffects.MAX_POPUPS];
+    final String[] popupText = new String[GameEffects.MAX_POPUPS];
+    final Color[] popupColor = new Color[GameEffects.MAX_POPUPS];
+    int popupCount;
+
+    void capture(GameBoard board, int roundEndDelay) {
+        EntityStore e = board.entities;
+        System.arraycopy(board.tiles, 0, tiles, 0, tiles.length);
+        System.arraycopy(board.itemAt, 0, itemAt, 0, itemAt.length);
+        entityCount = e.highWater;
+        System.arraycopy(e.mask, 0, mask, 0, entityCount);
+        System.arraycopy(e.tileX, 0, tileX, 0, entityCount);
+        System.arraycopy(e.tileY, 0, tileY, 0, entityCount);
+        playerCount = board.playerCount;
+        System.arraycopy(e.power, 0, power, 0, playerCount);
+        System.arraycopy(e.maxBalloons, 0, maxBalloons, 0, playerCount);
+        System.arraycopy(e.speed, 0, speed, 0, playerCount);
+        System.arraycopy(e.needles, 0, needles, 0, playerCount);
+        tick = board.tick;
+        this.roundEndDelay = roundEndDelay;
+    }
+
+    // 관전 화면용: 중계로 받은 상태를 그대로 옮긴다 (화면 효과는 중계하지 않음)
+    void copyFrom(GameSnapshot o) {
+        System.arraycopy(o.tiles, 0, tiles, 0, tiles.length);
+        System.arraycopy(o.itemAt, 0, itemAt, 0, itemAt.length);
+        entityCount = o.entityCount;
+        System.arraycopy(o.mask, 0, mask, 0, entityCount);
+        System.arraycopy(o.tileX, 0, tileX, 0, entityCount);
+        System.arraycopy(o.tileY, 0, tileY, 0, entityCount);
+        playerCount = o.playerCount;
+        System.arraycopy(o.power, 0, power, 0, playerCount);
+        System.arraycopy(o.maxBalloons, 0, maxBalloons, 0, playerCount);
+        System.arraycopy(o.speed, 0, speed, 0, playerCount);
+        System.arraycopy(o.needles, 0, needles, 0, playerCount);
+        tick = o.tick;
+        roundEndDelay = o.roundEndDelay;
+        particleCount = 0;
+        popupCount = 0;
+    }
+}
+
+// ========================================================
+// [핵심] 관전 중계 - 틱마다 바뀐 상태만 작은 바이너리 프레임으로 만들어 TCP 관전자에게 뿌린다
+// ========================================================
+// -Dwaterbomb.broadcastPort=7777 로 켠다. 게임 스레드는 관전자 수와 상관없이 틱마다 프레임을 한 번만
+// 만들어 넘기고, "spectator" 스레드가 NIO 로 같은 버퍼를 모든 관전자에게 그대로 보낸다 (복사 없음).
+// 프레임 (빅엔디안): 길이(int, 뒤따르는 바이트 수) / 종류(byte, 1 = 전체, 2 = 변경분) / 틱(long)
+//   / 라운드 종료 대기(short) / 인원(byte) / 인원 x [물줄기, 최대 물풍선, 속도, 바늘](byte 4개)
+//   / 타일: 전체면 TILE_COUNT x [타일, 아이템], 변경분이면 개수(short) + [칸(short), 타일, 아이템]
+//   / 엔티티: highWater(short) + 개수(short) + [id(short), 구성 요소(short), x(byte), y(byte)]
+// 뒤처진 관전자는 밀린 프레임을 버리고 다음 전체 프레임부터 다시 받는다.
+class SpectatorServer {
+    static final byte FRAME_KEY = 1;
+    static final byte FRAME_DELTA = 2;
+    static final int MAX_FRAME = 4 + 1 + 8 + 2 + 1 + GameBoard.MAX_PLAYERS * 4 + 2 + GameBoard.TILE_COUNT * 4 + 4
+            + EntityStore.CAPACITY * 6;
+    private static final int FRAME_POOL = 64;
+    private static final int MAX_PENDING = 32; // 관전자 한 명이 밀릴 수 있는 프레임 수
+    private static final int KEYFRAME_INTERVAL = 120; // 2초마다 전체 프레임 (중간에 들어온 관전자용)
+
+    static final class Frame {
+        final java.nio.ByteBuffer buf = java.nio.ByteBuffer.allocateDirect(MAX_FRAME);
+        boolean keyframe;
+        int refs; // spectator 스레드 전용
+    }
+
+    private static final class Spectator {
+        final java.nio.channels.SocketChannel channel;
+        final java.util.ArrayDeque<Frame> pending = new java.util.ArrayDeque<>(MAX_PENDING);
+        int offset; // pending 맨 앞 프레임에서 이미 보낸 바이트 수
+        boolean needKeyframe = true;
+
+        Spectator(java.nio.channels.SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    // 게임 스레드 <-> spectator 스레드 (고정 크기라 틱마다 노드를 만들지 않는다)
+    private static final java.util.concurrent.ArrayBlockingQueue<Frame> free = new java.util.concurrent.ArrayBlockingQueue<>(
+            FRAME_POOL);
+    private static final java.util.concurrent.ArrayBlockingQueue<Frame> outbox = new java.util.concurrent.ArrayBlockingQueue<>(
+            FRAME_POOL);
+    private static final java.util.concurrent.atomic.AtomicBoolean keyframeRequested = new java.util.concurrent.atomic.AtomicBoolean(
+            true);
+    private static volatile int spectatorCount;
+    private static java.nio.channels.Selector selector;
+
+    // 마지막으로 보낸 상태 (게임 스레드 전용)
+    private static final byte[] sentTiles = new byte[GameBoard.TILE_COUNT];
+    private static final byte[] sentItems = new byte[GameBoard.TILE_COUNT];
+    private static final int[] sentMask = new int[EntityStore.CAPACITY];
+    private static final int[] sentX = new int[EntityStore.CAPACITY];
+    private static final int[] sentY = new int[EntityStore.CAPACITY];
+    private static int sentCount;
+    private static long lastKeyTick;
+
+    public static void start(int port) {
+        try {
+            selector = java.nio.channels.Selector.open();
+            java.nio.channels.ServerSocketChannel server = java.nio.channels.ServerSocketChannel.open();
+            server.bind(new java.net.InetSocketAddress(port));
+            server.configureBlocking(false);
+            server.register(selector, java.nio.channels.SelectionKey.OP_ACCEPT);
+        } catch (java.io.IOException e) {
+            System.err.println("관전 중계를 시작할 수 없습니다: " + e.getMessage());
+            selector = null;
+            return;
+        }
+        for (int k = 0; k < FRAME_POOL; k++)
+            free.add(new Frame());
+        Thread t = new Thread(SpectatorServer::networkLoop, "spectator");
+        t.setDaemon(true);
+        t.start();
+        System.out.println("관전 중계 대기 중: 포트 " + port);
+    }
+
+    public static int getSpectatorCount() {
+        return spectatorCount;
+    }
+
+    // 새 라운드: 이전 라운드와의 변경분은 의미가 없으므로 전체 프레임부터
+    public static void roundStarted() {
+        keyframeRequested.set(true);
+    }
+
+    // 게임 스레드에서 틱마다 호출. 관전자가 없으면 아무것도 하지 않는다
+    public static void publish(GameBoard board, int roundEndDelay) {
+        if (spectatorCount == 0)
+            return;
+        Frame f = free.poll();
+        if (f == null) {
+            keyframeRequested.set(true); // 프레임이 모두 전송 중: 이번 틱은 건너뛰고 다음에 전체 프레임
+            return;
+        }
+        boolean key = keyframeRequested.getAndSet(false) || board.tick - lastKeyTick >= KEYFRAME_INTERVAL;
+        if (key)
+            lastKeyTick = board.tick;
+        encode(board, roundEndDelay, key, f.buf);
+        f.keyframe = key;
+        outbox.offer(f);
+        selector.wakeup();
+    }
+
+    private static void encode(GameBoard board, int roundEndDelay, boolean key, java.nio.ByteBuffer buf) {
+        EntityStore e = board.entities;
+        buf.clear();
+        buf.putInt(0); // 길이는 마지막에 채운다
+        buf.put(key ? FRAME_KEY : FRAME_DELTA).putLong(board.tick).putShort((short) roundEndDelay);
+        buf.put((byte) board.playerCount);
+        for (int p = 0; p < board.playerCount; p++)
+            buf.put((byte) e.power[p]).put((byte) e.maxBalloons[p]).put((byte) e.speed[p]).put((byte) e.needles[p]);
+
+        if (key) {
+            for (int i = 0; i < GameBoard.TILE_COUNT; i++)
+                buf.put(board.tiles[i]).put(board.itemAt[i]);
+        } else {
+            int countAt = buf.position();
+            buf.putShort((short) 0);
+            int changed = 0;
+            for (int i = 0; i < GameBoard.TILE_COUNT; i++) {
+                if (board.tiles[i] != sentTiles[i] || board.itemAt[i] != sentItems[i]) {
+                    buf.putShort((short) i).put(board.tiles[i]).put(board.itemAt[i]);
+                    changed++;
+                }
+            }
+            buf.putShort(countAt, (short) changed);
+        }
+        System.arraycopy(board.tiles, 0, sentTiles, 0, GameBoard.TILE_COUNT);
+        System.arraycopy(board.itemAt, 0, sentItems, 0, GameBoard.TILE_COUNT);
+
+        int count = e.highWater;
+        buf.putShort((short) count);
+        int countAt = buf.position();
+        buf.putShort((short) 0);
+        int changed = 0;
+        for (int id = 0; id < count; id++) {
+            if (key || id >= sentCount || e.mask[id] != sentMask[id] || e.tileX[id] != sentX[id]
+                    || e.tileY[id] != sentY[id]) {
+                buf.putShort((short) id).putShort((short) e.mask[id]).put((byte) e.tileX[id]).put((byte) e.tileY[id]);
+                sentMask[id] = e.mask[id];
+                sentX[id] = e.tileX[id];
+                sentY[id] = e.tileY[id];
+                changed++;
+            }
+        }
+        buf.putShort(countAt, (short) changed);
+        sentCount = count;
+        buf.putInt(0, buf.position() - 4);
+        buf.flip();
+    }
+
+    private static void networkLoop() {
+        java.util.List<Spectator> spectators = new java.util.ArrayList<>();
+        java.nio.ByteBuffer discard = java.nio.ByteBuffer.allocate(256);
+        while (true) {
+            try {
+                selector.select();
+                java.util.Iterator<java.nio.channels.SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    java.nio.channels.SelectionKey k = it.next();
+                    it.remove();
+                    if (!k.isValid())
+                        continue;
+                    if (k.isAcceptable()) {
+                        java.nio.channels.SocketChannel ch = ((java.nio.channels.ServerSocketChannel) k.channel()).accept();
+                        if (ch == null)
+                            continue;
+                        ch.configureBlocking(false);
+                        ch.setOption(java.net.StandardSocketOptions.TCP_NODELAY, true);
+                        Spectator s = new Spectator(ch);
+                        ch.register(selector, java.nio.channels.SelectionKey.OP_READ, s);
+                        spectators.add(s);
+                        spectatorCount = spectators.size();
+                        keyframeRequested.set(true);
+                        System.out.println("관전자 접속: " + ch.getRemoteAddress());
+                        continue;
+                    }
+                    Spectator s = (Spectator) k.attachment();
+                    // 관전자는 보내는 것이 없다: 읽기 이벤트는 연결 종료 감지용
+                    if (k.isReadable()) {
+                        discard.clear();
+                        if (s.channel.read(discard) < 0) {
+                            drop(s, spectators);
+                            continue;
+                        }
+                    }
+                    if (k.isValid() && k.isWritable())
+                        flush(s, spectators);
+                }
+
+                Frame f;
+                while ((f = outbox.poll()) != null) {
+                    for (int i = 0; i < spectators.size(); i++) {
+                        Spectator s = spectators.get(i);
+                        if (s.pending.size() >= MAX_PENDING) {
+                            // 너무 밀렸다: 보내던 프레임만 마저 보내고 나머지는 버린 뒤 전체 프레임부터 다시
+                            while (s.pending.size() > (s.offset > 0 ? 1 : 0))
+                                release(s.pending.pollLast());
+                            s.needKeyframe = true;
+                            keyframeRequested.set(true);
+                        }
+                        if (s.needKeyframe && !f.keyframe)
+                            continue;
+                        s.needKeyframe = false;
+                        s.pending.addLast(f);
+                        f.refs++;
+                    }
+                    if (f.refs == 0)
+                        free.offer(f);
+                }
+                for (int i = spectators.size() - 1; i >= 0; i--)
+                    flush(spectators.get(i), spectators);
+            } catch (java.io.IOException e) {
+                System.err.println("관전 중계 오류: " + e.getMessage());
+            }
+        }
+    }
+
+    // 공유 버퍼의 position/limit 은 이 스레드만 바꾸므로, 관전자마다 위치만 맞춰서 그대로 쓴다
+    private static void flush(Spectator s, java.util.List<Spectator> spectators) {
+        try {
+            while (!s.pending.isEmpty()) {
+                java.nio.ByteBuffer buf = s.pending.peekFirst().buf;
+                buf.position(s.offset);
+                s.channel.write(buf);
+                if (buf.hasRemaining()) {
+                    s.offset = buf.position();
+                    break;
+                }
+                s.offset = 0;
+                release(s.pending.pollFirst());
+            }
+            java.nio.channels.SelectionKey key = s.channel.keyFor(selector);
+            key.interestOps(java.nio.channels.SelectionKey.OP_READ
+                    | (s.pending.isEmpty() ? 0 : java.nio.channels.SelectionKey.OP_WRITE));
+        } catch (java.io.IOException e) {
+            drop(s, spectators);
+        }
+    }
+
+    private static void drop(Spectator s, java.util.List<Spectator> spectators) {
+        spectators.remove(s);
+        spectatorCount = spectators.size();
+        Frame f;
+        while ((f = s.pending.pollFirst()) != null)
+            release(f);
+        try {
+            s.channel.close();
+        } catch (java.io.IOException ignored) {
+        }
+        System.out.println("관전자 연결 종료");
     }
-}
\ No newline at end of file
+
+    private static void release(Frame f) {
+        if (--f.refs == 0)
+            free.offer(f);
+    }
+
+    // 관전 쪽: 받은 프레임을 스냅샷에 덮어쓴다. 전체 프레임을 받기 전이면 false
+    // 네트워크에서 온 값이므로 배열 색인으로 쓰기 전에 범위를 확인하고, 어긋나면 IOException (다시 접속)
+    static boolean apply(java.nio.ByteBuffer buf, GameSnapshot snap, boolean haveKeyframe) throws java.io.IOException {
+        try {
+            byte type = buf.get();
+            if (type != FRAME_KEY && type != FRAME_DELTA)
+                throw new java.io.IOException("알 수 없는 중계 프레임 종류: " + type);
+            if (type != FRAME_KEY && !haveKeyframe)
+                return false;
+            snap.tick = buf.getLong();
+            snap.roundEndDelay = buf.getShort();
+            int players = buf.get() & 0xFF;
+            if (players > GameBoard.MAX_PLAYERS)
+                throw new java.io.IOException("잘못된 플레이어 수: " + players);
+            snap.playerCount = players;
+            for (int p = 0; p < players; p++) {
+                snap.power[p] = buf.get();
+                snap.maxBalloons[p] = buf.get();
+                snap.speed[p] = buf.get();
+                snap.needles[p] = buf.get();
+            }
+            if (type == FRAME_KEY) {
+                for (int i = 0; i < GameBoard.TILE_COUNT; i++) {
+                    snap.tiles[i] = buf.get();
+                    snap.itemAt[i] = buf.get();
+                }
+            } else {
+                int tileChanges = buf.getShort() & 0xFFFF;
+                if (tileChanges > GameBoard.TILE_COUNT)
+                    throw new java.io.IOException("잘못된 타일 변경 수: " + tileChanges);
+                for (int n = 0; n < tileChanges; n++) {
+                    int i = buf.getShort() & 0xFFFF;
+                    if (i >= GameBoard.TILE_COUNT)
+                        throw new java.io.IOException("잘못된 타일 번호: " + i);
+                    snap.tiles[i] = buf.get();
+                    snap.itemAt[i] = buf.get();
+                }
+            }
+            int count = buf.getShort() & 0xFFFF;
+            if (count > EntityStore.CAPACITY)
+                throw new java.io.IOException("잘못된 엔티티 수: " + count);
+            snap.entityCount = count;
+            int entityChanges = buf.getShort() & 0xFFFF;
+            if (entityChanges > count)
+                throw new java.io.IOException("잘못된 엔티티 변경 수: " + entityChanges);
+            for (int n = 0; n < entityChanges; n++) {
+                int id = buf.getShort() & 0xFFFF;
+                if (id >= count)
+                    throw new java.io.IOException("잘못된 엔티티 번호: " + id);
+                snap.mask[id] = buf.getShort() & 0xFFFF;
+                snap.tileX[id] = buf.get();
+                snap.tileY[id] = buf.get();
+            }
+            if (buf.hasRemaining())
+                throw new java.io.IOException("중계 프레임 길이가 내용과 다릅니다: " + buf.remaining() + "바이트 남음");
+            return true;
+        } catch (java.nio.BufferUnderflowException e) {
+            throw new java.io.IOException("중계 프레임이 잘렸습니다");
+        }
+    }
+}
+
+// ========================================================
+// [핵심] 삼중 버퍼 - 쓰는 쪽 하나 / 읽는 쪽 하나가 락 없이 최신 값을 주고받는다
+// ========================================================
+// 쓰는 쪽은 back 을 채운 뒤 middle 과 맞바꾸고, 읽는 쪽은 새 값이 있을 때만 front 와 맞바꾼다.
+// 어느 쪽도 상대를 기다리지 않으며, 읽는 쪽은 항상 완성된 한 장만 본다.
+class TripleBuffer<T> {
+    private static final int INDEX_MASK = 3;
+    private static final int FRESH = 4; // middle 에 아직 읽지 않은 값이 있음
+
+    private final Object[] slots;
+    private final java.util.concurrent.atomic.AtomicInteger middle = new java.util.concurrent.atomic.AtomicInteger(1);
+    private int back = 0; // 쓰는 스레드 전용
+    private int front = 2; // 읽는 스레드 전용
+
+    public TripleBuffer(java.util.function.Supplier<T> factory) {
+        slots = new Object[] { factory.get(), factory.get(), factory.get() };
+    }
+
+    @SuppressWarnings("unchecked")
+    public T back() {
+        return (T) slots[back];
+    }
+
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T latest() {
+        if ((middle.get() & FRESH) != 0)
+            front = middle.getAndSet(front) & INDEX_MASK;
+        return (T) slots[front];
+    }
+}
+
+
+// ========================================================
+// [핵심] 오브젝트 풀 - 미리 만들어 둔 객체를 빌려 쓰고 돌려준다
+// ========================================================
+// 라운드 중에는 new 를 하지 않는다. 풀이 비면 null 을 돌려주고 효과를 생략한다.
+// -Dwaterbomb.debugPools=true 로 실행하면 빌려간 위치를 기억해 두었다가
+// 반납되지 않은 객체(누수)와 이중 반납을 System.err 로 알려준다.
+interface Poolable {
+    // 반납될 때 호출: 다음 사용을 위해 상태 초기화
+    void reset();
+}
+
+class ObjectPool<T extends Poolable> {
+    static final boolean DEBUG = Boolean.getBoolean("waterbomb.debugPools");
+
+    private final String name;
+    private final Object[] free;
+    private int freeCount;
+    private final int capacity;
+    private int exhausted;
+    // 디버그 모드에서만: 빌려간 객체 -> 빌려간 곳의 스택
+    private final java.util.IdentityHashMap<T, Throwable> outstanding = DEBUG ? new java.util.IdentityHashMap<>()
+            : null;
+
+    public ObjectPool(String name, int capacity, java.util.function.Supplier<T> factory) {
+        this.name = name;
+        this.capacity = capacity;
+        this.free = new Object[capacity];
+        for (int i = 0; i < capacity; i++)
+            free[i] = factory.get();
+        freeCount = capacity;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T acquire() {
+        if (freeCount == 0) {
+            exhausted++;
+            return null;
+        }
+        T obj = (T) free[--freeCount];
+        free[freeCount] = null;
+        if (DEBUG)
+            outstanding.put(obj, new Throwable("acquire " + name));
+        return obj;
+    }
+
+    public void release(T obj) {
+        if (DEBUG && outstanding.remove(obj) == null) {
+            System.err.println("[풀] " + name + ": 빌려가지 않은 객체를 반납했습니다 (이중 반납?)");
+            return;
+        }
+        // 디버그가 아니어도 빌려준 것보다 많이 돌아오면 (이중 반납) 스택을 넘치게 두지 않는다
+        if (freeCount == capacity) {
+            System.err.println("[풀] " + name + ": 빌려준 것보다 많이 반납됐습니다 (이중 반납)");
+            return;
+        }
+        obj.reset();
+        free[freeCount++] = obj;
+    }
+
+    public int inUse() {
+        return capacity - freeCount;
+    }
+
+    // 풀이 비어서 효과를 생략한 횟수 (크기를 늘려야 하는지 판단용)
+    public int getExhaustedCount() {
+        return exhausted;
+    }
+
+    // 라운드 종료 때 일괄 반납(clear) 전에 호출: 아직 살아 있는 live 외에 빌려간 채로 잃어버린 객체를 알려준다
+    public void checkLeaks(Object[] live, int liveCount) {
+        int leaked = inUse() - liveCount;
+        if (leaked <= 0)
+            return;
+        System.err.println("[풀] " + name + ": 반납되지 않은 객체 " + leaked + "개");
+        if (DEBUG) {
+            for (java.util.Map.Entry<T, Throwable> entry : outstanding.entrySet()) {
+                boolean alive = false;
+                for (int k = 0; k < liveCount && !alive; k++)
+                    alive = live[k] == entry.getKey();
+                if (!alive)
+                    entry.getValue().printStackTrace();
+            }
+        }
+    }
+}
+
+// ========================================================
+// [핵심] 게임 화면 효과 - 물방울 파티클, 떠오르는 글자
+// ========================================================
+class GameEffects {
+    static final int MAX_PARTICLES = 512;
+    static final int MAX_POPUPS = 32;
+    private static final int DROPLETS_PER_EXPLOSION = 12;
+    private static final int DROPLETS_PER_BLOCK = 6;
+    private static final Color DROPLET_COLOR = new Color(150, 210, 255);
+    private static final Color BLOCK_CHIP_COLOR = ThemeColors.ACCENT;
+    private static final String[] OUT_TEXTS = new String[GameBoard.MAX_PLAYERS];
+    static {
+        for (int p = 0; p < OUT_TEXTS.length; p++)
+            OUT_TEXTS[p] = GamePanelPlaceholder.PLAYER_TAGS[p] + " OUT!";
+    }
+
+    static final class Particle implements Poolable {
+        float x, y, vx, vy;
+        int life;
+        Color color;
+
+        @Override
+        public void reset() {
+            color = null;
+            life = 0;
+        }
+    }
+
+    static final class Popup implements Poolable {
+        String text;
+        float x, y;
+        int life;
+        Color color;
+
+        @Override
+        public void reset() {
+            text = null;
+            color = null;
+            life = 0;
+        }
+    }
+
+    private final ObjectPool<Particle> particlePool = new ObjectPool<>("particle", MAX_PARTICLES, Particle::new);
+    private final ObjectPool<Popup> popupPool = new ObjectPool<>("popup", MAX_POPUPS, Popup::new);
+    private final Particle[] particles = new Particle[MAX_PARTICLES];
+    private int particleCount;
+    private final Popup[] popups = new Popup[MAX_POPUPS];
+    private int popupCount;
+
+    private final int tileSize, originX, originY;
+    private int seed = 0x2545F491;
+
+    public GameEffects(int tileSize, int originX, int originY) {
+        this.tileSize = tileSize;
+        this.originX = originX;
+        this.originY = originY;
+    }
+
+    // 보드가 이번 틱에 남긴 사건(폭발/블록 파괴/탈락)을 효과로 바꾼다
+    public void spawnFrom(GameBoard board, Color[] playerColors) {
+        for (int k = 0; k < board.explodedCount; k++)
+            burst(board.explodedTiles[k], DROPLETS_PER_EXPLOSION, DROPLET_COLOR, 3f);
+        for (int k = 0; k < board.brokenCount; k++)
+            burst(board.brokenTiles[k], DROPLETS_PER_BLOCK, BLOCK_CHIP_COLOR, 2f);
+        EntityStore e = board.entities;
+        for (int k = 0; k < board.eliminatedCount; k++) {
+            int p = board.eliminated[k];
+            Popup pop = popupPool.acquire();
+            if (pop == null)
+                continue;
+            pop.text = board.isBot(p) ? "CPU OUT!" : OUT_TEXTS[p];
+            pop.x = originX + e.tileX[p] * tileSize + tileSize / 2f;
+            pop.y = originY + e.tileY[p] * tileSize;
+            pop.life = 60;
+            pop.color = playerColors[p];
+            popups[popupCount++] = pop;
+        }
+    }
+
+    private void burst(int tile, int count, Color color, float speed) {
+        float cx = originX + (tile % GameBoard.COLS) * tileSize + tileSize / 2f;
+        float cy = originY + (tile / GameBoard.COLS) * tileSize + tileSize / 2f;
+        for (int n = 0; n < count; n++) {
+            Particle pt = particlePool.acquire();
+            if (pt == null)
+                return; // 풀이 다 찼으면 나머지는 생략
+            pt.x = cx;
+            pt.y = cy;
+            pt.vx = (nextFloat() - 0.5f) * 2f * speed;
+            pt.vy = (nextFloat() - 0.8f) * 2f * speed;
+            pt.life = 20 + (int) (nextFloat() * 20);
+            pt.color = color;
+            particles[particleCount++] = pt;
+        }
+    }
+
+    // xorshift (Random 객체 없이 0~1 사이 값)
+    private float nextFloat() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return (seed >>> 8) / (float) (1 << 24);
+    }
+
+    // 한 틱 진행: 수명이 다한 효과는 마지막 원소와 자리를 바꿔 제거하고 풀로 반납
+    public void update() {
+        for (int k = particleCount - 1; k >= 0; k--) {
+            Particle pt = particles[k];
+            pt.x += pt.vx;
+            pt.y += pt.vy;
+            pt.vy += 0.25f; // 중력
+            if (--pt.life <= 0) {
+                particles[k] = particles[--particleCount];
+                particles[particleCount] = null;
+                particlePool.release(pt);
+            }
+        }
+        for (int k = popupCount - 1; k >= 0; k--) {
+            Popup pop = popups[k];
+            pop.y -= 0.6f;
+            if (--pop.life <= 0) {
+                popups[k] = popups[--popupCount];
+                popups[popupCount] = null;
+                popupPool.release(pop);
+            }
+        }
+    }
+
+    // 렌더링용 스냅샷에 현재 효과의 위치/색만 복사 (효과 객체 자체는 시뮬레이션 스레드 전용)
+    public void capture(GameSnapshot snap) {
+        for (int k = 0; k < particleCount; k++) {
+            Particle pt = particles[k];
+            snap.particleX[k] = pt.x;
+            snap.particleY[k] = pt.y;
+            snap.particleColor[k] = pt.color;
+        }
+        snap.particleCount = particleCount;
+        for (int k = 0; k < popupCount; k++) {
+            Popup pop = popups[k];
+            snap.popupX[k] = pop.x;
+            snap.popupY[k] = pop.y;
+            snap.popupText[k] = pop.text;
+            snap.popupColor[k] = pop.color;
+        }
+        snap.popupCount = popupCount;
+    }
+
+    // 라운드 시작/종료 때 남은 효과를 전부 반납
+    public void clear() {
+        while (particleCount > 0) {
+            Particle pt = particles[--particleCount];
+            particles[particleCount] = null;
+            particlePool.release(pt);
+        }
+        while (popupCount > 0) {
+            Popup pop = popups[--popupCount];
+            popups[popupCount] = null;
+            popupPool.release(pop);
+        }
+    }
+
+    // 정상 수명으로 반납되지 않은 효과가 있는지 (clear 전에 불러야 의미가 있다)
+    public void checkLeaks() {
+        particlePool.checkLeaks(particles, particleCount);
+        popupPool.checkLeaks(popups, popupCount);
+    }
+}
+
+// ========================================================
+// 7. 스플래시 (Splash) 화면 - splash2.wav 효과음 재생
+// ========================================================
+class SplashPanel extends JPanel implements ScreenAssets {
+    private static final int PANEL_WIDTH = 800;
+    private static final int PANEL_HEIGHT = 600;
+    private CrazyArcade_UI mainFrame;
+    private Timer transitionTimer;
+    private float alpha = 0f; // 페이드 인 효과용
+    private Timer fadeTimer;
+    private Image splashImage;
+
+    public SplashPanel(CrazyArcade_UI mainFrame) {
+        this.mainFrame = mainFrame;
+        setPreferredSize(new Dimension(PANEL_WIDTH, PANEL_HEIGHT));
+        setLayout(null);
+        setBackground(Color.BLACK);
+
+        // 마우스 클릭 시 바로 메뉴로 이동
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                goToMenu();
+            }
+        });
+
+        // 키보드 입력 시 바로 메뉴로 이동
+        setFocusable(true);
+        addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                goToMenu();
+            }
+        });
+    }
+
+    // 스플래시 이미지 (splash.png) - 페이드 인 도중에 도착해도 자연스럽게 보인다
+    @Override
+    public void loadAssets(ScreenLoad scope) {
+        if (splashImage != null)
+            return;
+        scope.fork(() -> AssetLoader.loadImage("splash.png"), img -> {
+            splashImage = img;
+            repaint();
+        });
+    }
+
+    // 패널이 화면에 표시될 때 호출
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        requestFocusInWindow();
+        startSplash();
+    }
+
+    private void startSplash() {
+        // splash2.wav 효과음 재생
+        playSplashSound();
+
+        // 페이드 인 효과
+        alpha = 0f;
+        fadeTimer = new Timer(30, e -> {
+            alpha += 0.05f;
+            if (alpha >= 1.0f) {
+                alpha = 1.0f;
+                fadeTimer.stop();
+            }
+            repaint();
+        });
+        fadeTimer.start();
+
+        // 3초 후 메뉴 화면으로 자동 전환
+        transitionTimer = new Timer(3000, e -> goToMenu());
+        transitionTimer.setRepeats(false);
+        transitionTimer.start();
+    }
+
+    private void playSplashSound() {
+        SfxEvent event = new SfxEvent();
+        event.begin();
+        // 시작할 때 AudioBank 에 미리 디코딩된 버퍼를 그대로 재생 (SFX 볼륨은 믹서에서 적용)
+        AudioBank.Sample sample = AudioBank.get(AudioBank.SFX_SPLASH);
+        if (sample != null) {
+            AudioMixer.getInstance().play(sample);
+            event.commit("splash2.wav", sample.sizeInBytes());
+            System.out.println("Splash 효과음 재생");
+        } else {
+            System.err.println("Splash 효과음이 로드되지 않았습니다");
+        }
+    }
+
+    private void goToMenu() {
+        if (transitionTimer != null) {
+            transitionTimer.stop();
+        }
+        if (fadeTimer != null) {
+            fadeTimer.stop();
+        }
+        // BGM 재생 시작
+        mainFrame.startBGM();
+        // 메뉴 화면으로 이동 (관전 모드면 바로 관전 화면)
+        mainFrame.showPanel(mainFrame.isSpectating() ? CrazyArcade_UI.PANEL_GAME : CrazyArcade_UI.PANEL_MENU);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+
+        // 배경
+        g2.setColor(Color.BLACK);
+        g2.fillRect(0, 0, getWidth(), getHeight());
+
+        // 페이드 인 효과 적용
+        g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha));
+
+        if (splashImage != null) {
+            // 스플래시 이미지가 있으면 표시
+            g2.drawImage(splashImage, 0, 0, getWidth(), getHeight(), this);
+        } else {
+            // 이미지가 없으면 텍스트 로고 표시
+            // 그라데이션 배경
+            GradientPaint gradient = new GradientPaint(
+                    0, 0, new Color(255, 200, 50),
+                    0, getHeight(), new Color(255, 100, 0));
+            g2.setPaint(gradient);
+            g2.fillRect(0, 0, getWidth(), getHeight());
+
+            // 게임 타이틀
+            g2.setColor(ThemeColors.DARK);
+            g2.setFont(new Font("맑은 고딕", Font.BOLD, 60));
+            String title = "Water Bomb Man";
+            FontMetrics fm = g2.getFontMetrics();
+            int titleX = (getWidth() - fm.stringWidth(title)) / 2;
+            g2.drawString(title, titleX, 250);
+
+            // 서브 타이틀
+            g2.setFont(new Font("맑은 고딕", Font.BOLD, 24));
+            String subtitle = "물풍선 대작전!";
+            fm = g2.getFontMetrics();
+            int subX = (getWidth() - fm.stringWidth(subtitle)) / 2;
+            g2.drawString(subtitle, subX, 310);
+        }
+
+        // 하단 안내 메시지
+        g2.setColor(Color.WHITE);
+        g2.setFont(new Font("맑은 고딕", Font.PLAIN, 16));
+        String hint = "클릭하거나 아무 키나 눌러서 시작";
+        FontMetrics fm = g2.getFontMetrics();
+        int hintX = (getWidth() - fm.stringWidth(hint)) / 2;
+        g2.drawString(hint, hintX, getHeight() - 50);
+        g2.dispose();
+    }
+}
+// ========================================================
+// [핵심] 엔티티 저장소 - 컴포넌트별 기본형 배열(SoA) + 빈 id 재활용
+// ========================================================
+// 플레이어/물풍선/물줄기 같은 게임 오브젝트를 객체로 만들지 않고 id 로만 다룬다.
+// 시스템은 배열을 앞에서부터 훑으며 필요한 컴포넌트 비트가 있는 id 만 처리한다.
+// 라운드 중에는 배열을 새로 만들지 않으므로 틱마다 가비지가 생기지 않는다.
+class EntityStore {
+    public static final int CAPACITY = 1024;
+
+    // 컴포넌트 비트
+    public static final int C_POSITION = 1;
+    public static final int C_PLAYER = 1 << 1;
+    public static final int C_ALIVE = 1 << 2;
+    public static final int C_BOT = 1 << 3;
+    public static final int C_BALLOON = 1 << 4;
+    public static final int C_BLAST = 1 << 5;
+
+    final int[] mask = new int[CAPACITY];
+    // C_POSITION
+    final int[] tileX = new int[CAPACITY];
+    final int[] tileY = new int[CAPACITY];
+    // C_BALLOON / C_BLAST: 남은 틱, 물줄기 길이, 주인 플레이어
+    final int[] timer = new int[CAPACITY];
+    final int[] power = new int[CAPACITY];
+    final int[] owner = new int[CAPACITY];
+    // C_PLAYER
+    final int[] maxBalloons = new int[CAPACITY];
+    final int[] activeBalloons = new int[CAPACITY];
+    final int[] moveCooldown = new int[CAPACITY];
+    final int[] command = new int[CAPACITY];
+    // C_PLAYER 인벤토리
+    final int[] speed = new int[CAPACITY];
+    final int[] needles = new int[CAPACITY];
+
+    private final int[] freeIds = new int[CAPACITY];
+    private int freeTop;
+    int highWater; // 한 번이라도 쓰인 id 의 끝 (시스템은 여기까지만 훑는다)
+
+    public void clear() {
+        java.util.Arrays.fill(mask, 0, highWater, 0);
+        highWater = 0;
+        freeTop = 0;
+    }
+
+    public int create(int components) {
+        int id;
+        if (freeTop > 0)
+            id = freeIds[--freeTop];
+        else if (highWater < CAPACITY)
+            id = highWater++;
+        else
+            return -1; // 가득 참
+        mask[id] = components;
+        return id;
+    }
+
+    public void destroy(int id) {
+        if (mask[id] == 0)
+            return;
+        mask[id] = 0;
+        freeIds[freeTop++] = id;
+    }
+
+    public boolean has(int id, int components) {
+        return (mask[id] & components) == components;
+    }
+
+    public int liveCount() {
+        return highWater - freeTop;
+    }
+
+    public int count(int components) {
+        int n = 0;
+        for (int id = 0; id < highWater; id++)
+            if ((mask[id] & components) == components)
+                n++;
+        return n;
+    }
+}
+
+// ========================================================
+// [핵심] 게임 보드 (그리드 엔진) - 타일 레이어 + 엔티티 + 시스템
+// ========================================================
+class GameBoard {
+    public static final int COLS = 15;
+    public static final int ROWS = 13;
+    public static final int TILE_COUNT = COLS * ROWS;
+    public static final int MAX_PLAYERS = 8;
+
+    public static final byte TILE_EMPTY = 0;
+    public static final byte TILE_BLOCK = 1; // 부서지는 블록
+    public static final byte TILE_WALL = 2; // 부서지지 않는 벽
+
+    public static final int BALLOON_FUSE = 150; // 물풍선 터지기까지 2.5초 (60Hz 기준)
+    public static final int BLAST_TICKS = 30; // 물줄기 유지 시간
+    public static final int MOVE_COOLDOWN = 8; // 한 칸 이동에 걸리는 틱 수
+    public static final int MIN_MOVE_COOLDOWN = 3;
+    public static final int MAX_POWER = 7;
+    public static final int MAX_BALLOONS = 6;
+
+    // 아이템 id (맵 파일의 아이템 테이블과 같은 값)
+    public static final byte ITEM_NONE = 0;
+    public static final byte ITEM_BALLOON = 1; // 물풍선 +1
+    public static final byte ITEM_POWER = 2; // 물줄기 +1
+    public static final byte ITEM_SPEED = 3; // 속도 +1
+    public static final byte ITEM_NEEDLE = 4; // 바늘 (지금은 개수만 모은다)
+
+    // 플레이어 명령 (방향 + 물풍선 플래그)
+    public static final int CMD_NONE = 0;
+    public static final int CMD_UP = 1;
+    public static final int CMD_DOWN = 2;
+    public static final int CMD_LEFT = 3;
+    public static final int CMD_RIGHT = 4;
+    public static final int CMD_DIR_MASK = 7;
+    public static final int CMD_BOMB = 8;
+
+    static final int[] DX = { 0, 0, 0, -1, 1 };
+    static final int[] DY = { 0, -1, 1, 0, 0 };
+
+    private static final int PLAYER = EntityStore.C_PLAYER | EntityStore.C_POSITION;
+    private static final int LIVE_PLAYER = PLAYER | EntityStore.C_ALIVE;
+
+    final byte[] tiles = new byte[TILE_COUNT];
+    final byte[] itemAt = new byte[TILE_COUNT]; // 바닥에 떨어진 아이템
+    final EntityStore entities = new EntityStore();
+    // 타일 -> 엔티티 id (-1 = 없음). 길찾기/충돌 판정용 공간 색인
+    final int[] balloonAt = new int[TILE_COUNT];
+    final int[] blastAt = new int[TILE_COUNT];
+
+    // 플레이어는 reset 때 가장 먼저 만들어지므로 엔티티 id 가 곧 플레이어 번호 (0 ~ playerCount-1)
+    int playerCount;
+    long tick;
+    // 같은 시드 + 같은 입력이면 같은 아이템이 나온다 (리플레이용)
+    long seed;
+    final FastRandom rng = new FastRandom(0);
+    DropTable dropTable = DropTable.DEFAULT;
+
+    // 연쇄 폭발 처리용 스택 (틱마다 할당하지 않도록 미리 생성)
+    private final int[] chainStack = new int[TILE_COUNT];
+
+    // 이번 틱에 일어난 일 (화면 효과용, 다음 틱 시작 때 비워진다)
+    final int[] explodedTiles = new int[TILE_COUNT];
+    int explodedCount;
+    final int[] brokenTiles = new int[TILE_COUNT];
+    int brokenCount;
+    final int[] eliminated = new int[MAX_PLAYERS];
+    int eliminatedCount;
+
+    // 기본 맵: 홀수 좌표마다 벽, 나머지는 일정 확률로 블록 (스폰 지점 주변은 비움)
+    static final int[][] SPAWNS = {
+            { 0, 0 }, { COLS - 1, ROWS - 1 }, { COLS - 1, 0 }, { 0, ROWS - 1 },
+            { COLS / 2, 0 }, { COLS / 2, ROWS - 1 }, { 0, ROWS / 2 }, { COLS - 1, ROWS / 2 } };
+    int[][] spawns = SPAWNS;
+
+    public void generateDefault(long seed) {
+        spawns = SPAWNS;
+        dropTable = DropTable.DEFAULT;
+        java.util.Random rnd = new java.util.Random(seed);
+        for (int y = 0; y < ROWS; y++) {
+            for (int x = 0; x < COLS; x++) {
+                int i = index(x, y);
+                if (x % 2 == 1 && y % 2 == 1)
+                    tiles[i] = TILE_WALL;
+                else
+                    tiles[i] = rnd.nextInt(100) < 60 ? TILE_BLOCK : TILE_EMPTY;
+            }
+        }
+        for (int[] s : SPAWNS) {
+            clearAround(s[0], s[1]);
+        }
+    }
+
+    // 맵 파일의 타일 레이어를 복사해 온다 (게임 중에 블록이 부서지므로 원본은 건드리지 않음)
+    public void load(MapData map) {
+        map.copyTiles(tiles);
+        spawns = map.spawns;
+        dropTable = map.dropTable;
+    }
+
+    private void clearAround(int x, int y) {
+        for (int d = 0; d <= 4; d++) {
+            int nx = x + DX[d], ny = y + DY[d];
+            if (inBounds(nx, ny) && tiles[index(nx, ny)] == TILE_BLOCK)
+                tiles[index(nx, ny)] = TILE_EMPTY;
+        }
+    }
+
+    public void reset(int humans, int bots, long seed) {
+        this.seed = seed;
+        rng.setSeed(seed);
+        java.util.Arrays.fill(itemAt, ITEM_NONE);
+        entities.clear();
+        java.util.Arrays.fill(balloonAt, -1);
+        java.util.Arrays.fill(blastAt, -1);
+        playerCount = Math.min(Math.min(MAX_PLAYERS, spawns.length), humans + bots);
+        for (int p = 0; p < playerCount; p++) {
+            int id = entities.create(LIVE_PLAYER | (p >= humans ? EntityStore.C_BOT : 0));
+            entities.tileX[id] = spawns[p][0];
+            entities.tileY[id] = spawns[p][1];
+            entities.power[id] = 2;
+            entities.maxBalloons[id] = 1;
+            entities.activeBalloons[id] = 0;
+            entities.moveCooldown[id] = 0;
+            entities.command[id] = CMD_NONE;
+            entities.speed[id] = 0;
+            entities.needles[id] = 0;
+        }
+        tick = 0;
+        explodedCount = brokenCount = eliminatedCount = 0;
+    }
+
+    public static int index(int x, int y) {
+        return y * COLS + x;
+    }
+
+    public static boolean inBounds(int x, int y) {
+        return x >= 0 && y >= 0 && x < COLS && y < ROWS;
+    }
+
+    // 플레이어가 들어갈 수 있는 타일인지 (벽/블록/물풍선은 통과 불가)
+    public boolean isWalkable(int i) {
+        return tiles[i] == TILE_EMPTY && balloonAt[i] < 0;
+    }
+
+    public boolean isAlive(int player) {
+        return entities.has(player, EntityStore.C_ALIVE);
+    }
+
+    public boolean isBot(int player) {
+        return entities.has(player, EntityStore.C_BOT);
+    }
+
+    // 속도 아이템을 먹을수록 한 칸 이동 시간이 짧아진다
+    public int moveDelay(int player) {
+        return Math.max(MIN_MOVE_COOLDOWN, MOVE_COOLDOWN - entities.speed[player]);
+    }
+
+    public int aliveCount() {
+        return entities.count(LIVE_PLAYER);
+    }
+
+    public void setCommand(int player, int cmd) {
+        entities.command[player] = cmd;
+    }
+
+    public void tick() {
+        tick++;
+        explodedCount = brokenCount = eliminatedCount = 0;
+        playerSystem();
+        pickupSystem();
+        blastSystem();
+        fuseSystem();
+        damageSystem();
+    }
+
+    // 명령에 따라 물풍선을 놓고 한 칸씩 이동
+    private void playerSystem() {
+        EntityStore e = entities;
+        for (int id = 0; id < e.highWater; id++) {
+            if ((e.mask[id] & LIVE_PLAYER) != LIVE_PLAYER)
+                continue;
+            int cmd = e.command[id];
+            if ((cmd & CMD_BOMB) != 0) {
+                placeBalloon(id);
+                e.command[id] = cmd & ~CMD_BOMB; // 물풍선은 한 번만
+            }
+            if (e.moveCooldown[id] > 0) {
+                e.moveCooldown[id]--;
+                continue;
+            }
+            int dir = cmd & CMD_DIR_MASK;
+            if (dir != CMD_NONE) {
+                int nx = e.tileX[id] + DX[dir], ny = e.tileY[id] + DY[dir];
+                if (inBounds(nx, ny) && isWalkable(index(nx, ny))) {
+                    e.tileX[id] = nx;
+                    e.tileY[id] = ny;
+                    e.moveCooldown[id] = moveDelay(id);
+                }
+            }
+        }
+    }
+
+    // 아이템 위에 선 플레이어가 아이템을 먹는다
+    private void pickupSystem() {
+        EntityStore e = entities;
+        for (int id = 0; id < e.highWater; id++) {
+            if ((e.mask[id] & LIVE_PLAYER) != LIVE_PLAYER)
+                continue;
+            int i = index(e.tileX[id], e.tileY[id]);
+            byte item = itemAt[i];
+            if (item == ITEM_NONE)
+                continue;
+            itemAt[i] = ITEM_NONE;
+            switch (item) {
+                case ITEM_BALLOON:
+                    e.maxBalloons[id] = Math.min(MAX_BALLOONS, e.maxBalloons[id] + 1);
+                    break;
+                case ITEM_POWER:
+                    e.power[id] = Math.min(MAX_POWER, e.power[id] + 1);
+                    break;
+                case ITEM_SPEED:
+                    e.speed[id] = Math.min(MOVE_COOLDOWN - MIN_MOVE_COOLDOWN, e.speed[id] + 1);
+                    break;
+                case ITEM_NEEDLE:
+                    e.needles[id]++;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    // 물줄기 수명이 다하면 제거
+    private void blastSystem() {
+        EntityStore e = entities;
+        for (int id = 0; id < e.highWater; id++) {
+            if ((e.mask[id] & EntityStore.C_BLAST) == 0 || --e.timer[id] > 0)
+                continue;
+            int i = index(e.tileX[id], e.tileY[id]);
+            if (blastAt[i] == id)
+                blastAt[i] = -1;
+            e.destroy(id);
+        }
+    }
+
+    // 물풍선 심지가 다 타면 폭발
+    private void fuseSystem() {
+        EntityStore e = entities;
+        for (int id = 0; id < e.highWater; id++) {
+            if ((e.mask[id] & EntityStore.C_BALLOON) != 0 && e.timer[id] > 0 && --e.timer[id] == 0)
+                explode(id);
+        }
+    }
+
+    // 물줄기 위에 있는 플레이어는 탈락
+    private void damageSystem() {
+        EntityStore e = entities;
+        for (int id = 0; id < e.highWater; id++) {
+            if ((e.mask[id] & LIVE_PLAYER) == LIVE_PLAYER && blastAt[index(e.tileX[id], e.tileY[id])] >= 0) {
+                e.mask[id] &= ~EntityStore.C_ALIVE;
+                eliminated[eliminatedCount++] = id;
+            }
+        }
+    }
+
+    private void placeBalloon(int player) {
+        EntityStore e = entities;
+        int i = index(e.tileX[player], e.tileY[player]);
+        if (balloonAt[i] >= 0 || e.activeBalloons[player] >= e.maxBalloons[player])
+            return;
+        int id = e.create(EntityStore.C_BALLOON | EntityStore.C_POSITION);
+        if (id < 0)
+            return;
+        e.tileX[id] = e.tileX[player];
+        e.tileY[id] = e.tileY[player];
+        e.timer[id] = BALLOON_FUSE;
+        e.power[id] = e.power[player];
+        e.owner[id] = player;
+        balloonAt[i] = id;
+        e.activeBalloons[player]++;
+    }
+
+    // 물풍선 폭발 (물줄기에 닿은 다른 물풍선도 연쇄적으로 터짐)
+    private void explode(int balloon) {
+        EntityStore e = entities;
+        int top = 0;
+        chainStack[top++] = balloon;
+        e.timer[balloon] = -1; // 스택에 올라간 표시
+        while (top > 0) {
+            int b = chainStack[--top];
+            int x = e.tileX[b], y = e.tileY[b];
+            int range = e.power[b];
+            balloonAt[index(x, y)] = -1;
+            explodedTiles[explodedCount++] = index(x, y);
+            e.activeBalloons[e.owner[b]]--;
+            e.destroy(b);
+            spawnBlast(x, y);
+            for (int d = 1; d <= 4; d++) {
+                for (int r = 1; r <= range; r++) {
+                    int nx = x + DX[d] * r, ny = y + DY[d] * r;
+                    if (!inBounds(nx, ny))
+                        break;
+                    int n = index(nx, ny);
+                    if (tiles[n] == TILE_WALL)
+                        break;
+                    spawnBlast(nx, ny);
+                    if (tiles[n] == TILE_BLOCK) {
+                        tiles[n] = TILE_EMPTY;
+                        brokenTiles[brokenCount++] = n;
+                        itemAt[n] = dropTable.sample(rng);
+                        break;
+                    }
+                    itemAt[n] = ITEM_NONE; // 물줄기에 닿은 아이템은 사라진다
+                    int other = balloonAt[n];
+                    if (other >= 0 && e.timer[other] > 0) {
+                        e.timer[other] = -1;
+                        chainStack[top++] = other;
+                    }
+                }
+            }
+        }
+    }
+
+    // 같은 타일에 물줄기가 이미 있으면 새로 만들지 않고 수명만 갱신
+    private void spawnBlast(int x, int y) {
+        EntityStore e = entities;
+        int i = index(x, y);
+        int id = blastAt[i];
+        if (id < 0) {
+            id = e.create(EntityStore.C_BLAST | EntityStore.C_POSITION);
+            if (id < 0)
+                return;
+            e.tileX[id] = x;
+            e.tileY[id] = y;
+            blastAt[i] = id;
+        }
+        e.timer[id] = BLAST_TICKS;
+    }
+}
+
+// ========================================================
+// [핵심] 위험 지도 - 타일별로 물줄기가 덮치기까지 남은 틱 수
+// ========================================================
+class DangerMap {
+    public static final int SAFE = Integer.MAX_VALUE;
+    final int[] eta = new int[GameBoard.TILE_COUNT];
+    // 물풍선 엔티티별 실제로 터지는 시점 (연쇄 반영)
+    private final int[] effectiveFuse = new int[EntityStore.CAPACITY];
+
+    // 게임 스레드에서 틱마다 한 번 계산하고, 봇들은 읽기만 한다
+    public void compute(GameBoard board) {
+        EntityStore e = board.entities;
+        java.util.Arrays.fill(eta, SAFE);
+        for (int id = 0; id < e.highWater; id++) {
+            if ((e.mask[id] & EntityStore.C_BALLOON) != 0)
+                effectiveFuse[id] = e.timer[id];
+            else if ((e.mask[id] & EntityStore.C_BLAST) != 0)
+                eta[GameBoard.index(e.tileX[id], e.tileY[id])] = 0;
+        }
+        // 연쇄 폭발: 먼저 터지는 풍선의 물줄기에 닿는 풍선은 그 시점에 같이 터진다
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int id = 0; id < e.highWater; id++) {
+                if ((e.mask[id] & EntityStore.C_BALLOON) == 0)
+                    continue;
+                int t = effectiveFuse[id];
+                int x = e.tileX[id], y = e.tileY[id];
+                for (int d = 1; d <= 4; d++) {
+                    for (int r = 1; r <= e.power[id]; r++) {
+                        int nx = x + GameBoard.DX[d] * r, ny = y + GameBoard.DY[d] * r;
+                        if (!GameBoard.inBounds(nx, ny))
+                            break;
+                        int n = GameBoard.index(nx, ny);
+                        if (board.tiles[n] != GameBoard.TILE_EMPTY)
+                            break;
+                        int other = board.balloonAt[n];
+                        if (other >= 0 && effectiveFuse[other] > t) {
+                            effectiveFuse[other] = t;
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+        for (int id = 0; id < e.highWater; id++) {
+            if ((e.mask[id] & EntityStore.C_BALLOON) != 0)
+                markCross(board, GameBoard.index(e.tileX[id], e.tileY[id]), effectiveFuse[id], e.power[id], eta);
+        }
+    }
+
+    // 한 물풍선이 덮는 십자 범위를 target 배열에 기록 (더 이른 시간만 반영)
+    static void markCross(GameBoard board, int i, int t, int power, int[] target) {
+        if (t < target[i])
+            target[i] = t;
+        int x = i % GameBoard.COLS, y = i / GameBoard.COLS;
+        for (int d = 1; d <= 4; d++) {
+            for (int r = 1; r <= power; r++) {
+                int nx = x + GameBoard.DX[d] * r, ny = y + GameBoard.DY[d] * r;
+                if (!GameBoard.inBounds(nx, ny))
+                    break;
+                int n = GameBoard.index(nx, ny);
+                if (board.tiles[n] == GameBoard.TILE_WALL)
+                    break;
+                if (t < target[n])
+                    target[n] = t;
+                if (board.tiles[n] == GameBoard.TILE_BLOCK)
+                    break;
+            }
+        }
+    }
+}
+
+// ========================================================
+// [핵심] CPU 봇 두뇌 - 위험 지도 + 안전 타일 BFS + 물풍선 설치 예측
+// ========================================================
+class BotBrain {
+    public static final int TIMED_OUT = -1;
+
+    private final int player;
+    // BFS 작업 공간 (봇마다 따로 두어 병렬 탐색 시 공유하지 않음)
+    private final int[] queue = new int[GameBoard.TILE_COUNT];
+    private final int[] dist = new int[GameBoard.TILE_COUNT];
+    private final int[] firstStep = new int[GameBoard.TILE_COUNT];
+    private final int[] lookahead = new int[GameBoard.TILE_COUNT];
+    private long deadline;
+    private int expanded;
+    private int wanderSeed;
+
+    public BotBrain(int player) {
+        this.player = player;
+        this.wanderSeed = 0x9E3779B9 * (player + 1);
+    }
+
+    // 다음 명령을 계산한다. 시간 예산을 넘기면 TIMED_OUT 반환
+    public int decide(GameBoard board, DangerMap danger, long deadline) {
+        this.deadline = deadline;
+        this.expanded = 0;
+        EntityStore e = board.entities;
+        int cur = GameBoard.index(e.tileX[player], e.tileY[player]);
+
+        // 1) 위험한 곳에 있으면 가장 가까운 안전 타일로 도망
+        if (danger.eta[cur] != DangerMap.SAFE) {
+            int step = search(board, cur, danger.eta, GOAL_SAFE);
+            return step == Integer.MIN_VALUE ? TIMED_OUT : Math.max(step, GameBoard.CMD_NONE);
+        }
+
+        // 2) 블록/상대가 사정권이면, 도망칠 길이 있을 때만 물풍선 설치
+        if (e.activeBalloons[player] < e.maxBalloons[player] && board.balloonAt[cur] < 0
+                && worthBombing(board, cur)) {
+            System.arraycopy(danger.eta, 0, lookahead, 0, lookahead.length);
+            DangerMap.markCross(board, cur, GameBoard.BALLOON_FUSE, e.power[player], lookahead);
+            int escape = search(board, cur, lookahead, GOAL_SAFE);
+            if (escape == Integer.MIN_VALUE)
+                return TIMED_OUT;
+            if (escape > GameBoard.CMD_NONE)
+                return GameBoard.CMD_BOMB | escape;
+        }
+
+        // 3) 안전한 타일만 밟으며 아이템 / 블록 옆 / 상대 근처로 이동
+        int step = search(board, cur, danger.eta, GOAL_TARGET);
+        if (step == Integer.MIN_VALUE)
+            return TIMED_OUT;
+        if (step > GameBoard.CMD_NONE)
+            return step;
+        return wander(board, cur, danger);
+    }
+
+    private static final int GOAL_SAFE = 0;
+    private static final int GOAL_TARGET = 1;
+
+    // BFS: 도착 시점에 물줄기가 없는 타일만 확장. 목표까지의 첫 이동 방향을 반환
+    // (목표 없음: CMD_NONE, 시간 초과: Integer.MIN_VALUE)
+    private int search(GameBoard board, int start, int[] eta, int goal) {
+        int moveDelay = board.moveDelay(player);
+        java.util.Arrays.fill(dist, -1);
+        int head = 0, tail = 0;
+        queue[tail++] = start;
+        dist[start] = 0;
+        firstStep[start] = GameBoard.CMD_NONE;
+        while (head < tail) {
+            if ((++expanded & 31) == 0 && System.nanoTime() > deadline)
+                return Integer.MIN_VALUE;
+            int i = queue[head++];
+            if (i != start) {
+                if (goal == GOAL_SAFE && eta[i] == DangerMap.SAFE)
+                    return firstStep[i];
+                if (goal == GOAL_TARGET && (board.itemAt[i] != GameBoard.ITEM_NONE || worthBombing(board, i)))
+                    return firstStep[i];
+            }
+            int x = i % GameBoard.COLS, y = i / GameBoard.COLS;
+            for (int d = 1; d <= 4; d++) {
+                int nx = x + GameBoard.DX[d], ny = y + GameBoard.DY[d];
+                if (!GameBoard.inBounds(nx, ny))
+                    continue;
+                int n = GameBoard.index(nx, ny);
+                if (dist[n] >= 0 || !board.isWalkable(n))
+                    continue;
+                int arrival = (dist[i] + 1) * (moveDelay + 1);
+                // 도착할 때 (또는 지나가는 동안) 물줄기가 닿는 타일은 제외
+                if (eta[n] <= arrival + moveDelay)
+                    continue;
+                if (goal == GOAL_TARGET && eta[n] != DangerMap.SAFE)
+                    continue;
+                dist[n] = dist[i] + 1;
+                firstStep[n] = i == start ? d : firstStep[i];
+                queue[tail++] = n;
+            }
+        }
+        return GameBoard.CMD_NONE;
+    }
+
+    // 인접 블록이 있거나 상대가 물줄기 범위 안에 있는지
+    private boolean worthBombing(GameBoard board, int i) {
+        int x = i % GameBoard.COLS, y = i / GameBoard.COLS;
+        for (int d = 1; d <= 4; d++) {
+            int nx = x + GameBoard.DX[d], ny = y + GameBoard.DY[d];
+            if (GameBoard.inBounds(nx, ny) && board.tiles[GameBoard.index(nx, ny)] == GameBoard.TILE_BLOCK)
+                return true;
+        }
+        EntityStore e = board.entities;
+        int range = e.power[player];
+        for (int p = 0; p < board.playerCount; p++) {
+            if (p == player || !board.isAlive(p))
+                continue;
+            int dx = Math.abs(e.tileX[p] - x), dy = Math.abs(e.tileY[p] - y);
+            if ((dx == 0 && dy <= range) || (dy == 0 && dx <= range))
+                return true;
+        }
+        return false;
+    }
+
+    // 할 일이 없으면 안전한 이웃 타일로 무작위 이동
+    private int wander(GameBoard board, int cur, DangerMap danger) {
+        wanderSeed ^= wanderSeed << 13;
+        wanderSeed ^= wanderSeed >>> 17;
+        wanderSeed ^= wanderSeed << 5;
+        int startDir = (wanderSeed >>> 1) % 4;
+        int x = cur % GameBoard.COLS, y = cur / GameBoard.COLS;
+        for (int k = 0; k < 4; k++) {
+            int d = 1 + (startDir + k) % 4;
+            int nx = x + GameBoard.DX[d], ny = y + GameBoard.DY[d];
+            if (GameBoard.inBounds(nx, ny) && board.isWalkable(GameBoard.index(nx, ny))
+                    && danger.eta[GameBoard.index(nx, ny)] == DangerMap.SAFE)
+                return d;
+        }
+        return GameBoard.CMD_NONE;
+    }
+}
+
+// ========================================================
+// [핵심] 봇 지휘자 - ForkJoinPool 에서 봇들을 병렬로 생각시키고 틱 예산을 지킨다
+// ========================================================
+class BotDirector {
+    // 60Hz 틱(16.6ms) 중 봇에게 허용하는 시간
+    public static final long TICK_BUDGET_NANOS = 4_000_000L;
+
+    private final java.util.concurrent.ForkJoinPool pool;
+    private final DangerMap danger = new DangerMap();
+    private final BotBrain[] brains = new BotBrain[GameBoard.MAX_PLAYERS];
+    private final BotTask[] tasks = new BotTask[GameBoard.MAX_PLAYERS];
+    private final int[] decisions = new int[GameBoard.MAX_PLAYERS];
+    private final RootTask root = new RootTask();
+    private int taskCount;
+    private GameBoard board;
+    private long deadline;
+    private long degradedTicks;
+
+    public BotDirector() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        // 게임 스레드 몫으로 코어 하나는 남겨둔다
+        // 게임 화면과 수명이 같고 작업 스레드는 데몬이라, 따로 닫지 않아도 종료를 막지 않는다
+        pool = new java.util.concurrent.ForkJoinPool(Math.max(1, cores - 1));
+    }
+
+    public void attach(GameBoard board) {
+        this.board = board;
+        taskCount = 0;
+        for (int p = 0; p < board.playerCount; p++) {
+            if (board.isBot(p)) {
+                brains[p] = new BotBrain(p);
+                tasks[taskCount++] = new BotTask(p);
+            }
+        }
+    }
+
+    // 게임 틱마다 호출. 예산 안에 끝난 봇만 새 명령을 받고, 나머지는 이전 명령을 유지한다
+    // 탐색 작업은 board/danger 를 읽으므로, 돌아가기 전에 반드시 모두 멈춘 것을 확인한다
+    // (그래야 board.tick() 과 동시에 읽는 일이 없다)
+    public void think() {
+        if (taskCount == 0)
+            return;
+        danger.compute(board);
+        deadline = System.nanoTime() + TICK_BUDGET_NANOS;
+        for (int t = 0; t < taskCount; t++) {
+            decisions[tasks[t].player] = BotBrain.TIMED_OUT;
+            tasks[t].reinitialize();
+        }
+        root.reinitialize();
+        pool.execute(root);
+        try {
+            root.get(TICK_BUDGET_NANOS, java.util.concurrent.TimeUnit.NANOSECONDS);
+        } catch (java.util.concurrent.TimeoutException e) {
+            // 작업은 deadline 을 보고 스스로 멈춘다: 끝난 봇의 결과만 쓰고 나머지는 이전 명령 유지
+            root.quietlyJoin();
+            degradedTicks++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            root.quietlyJoin();
+            return;
+        } catch (java.util.concurrent.ExecutionException e) {
+            System.err.println("봇 탐색 실패: " + e.getCause());
+        }
+        for (int t = 0; t < taskCount; t++) {
+            int p = tasks[t].player;
+            if (decisions[p] != BotBrain.TIMED_OUT)
+                board.setCommand(p, decisions[p]);
+            else
+                board.setCommand(p, board.entities.command[p] & GameBoard.CMD_DIR_MASK);
+        }
+    }
+
+    public long getDegradedTicks() {
+        return degradedTicks;
+    }
+
+    private class RootTask extends java.util.concurrent.RecursiveAction {
+        @Override
+        protected void compute() {
+            if (taskCount == 1) {
+                tasks[0].invoke();
+                return;
+            }
+            for (int t = 1; t < taskCount; t++)
+                tasks[t].fork();
+            tasks[0].invoke();
+            for (int t = 1; t < taskCount; t++)
+                tasks[t].join();
+        }
+    }
+
+    private class BotTask extends java.util.concurrent.RecursiveAction {
+        final int player;
+
+        BotTask(int player) {
+            this.player = player;
+        }
+
+        @Override
+        protected void compute() {
+            if (System.nanoTime() > deadline)
+                decisions[player] = BotBrain.TIMED_OUT; // 시작도 못 했으면 바로 포기
+            else if (board.isAlive(player))
+                decisions[player] = brains[player].decide(board, danger, deadline);
+            else
+                decisions[player] = GameBoard.CMD_NONE;
+        }
+    }
+}
+
+// ========================================================
+// [핵심] 빠른 난수 - SplitMix64 (시드가 같으면 항상 같은 수열)
+// ========================================================
+class FastRandom {
+    private long state;
+
+    public FastRandom(long seed) {
+        state = seed;
+    }
+
+    public void setSeed(long seed) {
+        state = seed;
+    }
+
+    public long nextLong() {
+        long z = (state += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
+
+// ========================================================
+// [핵심] 아이템 드롭 테이블 - 별칭(alias) 방식으로 O(1) 가중치 추첨
+// ========================================================
+// "안 나옴"도 하나의 결과로 표에 넣어서, 블록 하나당 난수 한 번 + 비교 한 번으로 끝난다.
+// 난수 64비트 중 위쪽 32비트로 칸을 고르고, 아래쪽 32비트를 그 칸의 문턱값과 비교한다.
+class DropTable {
+    // 맵 파일이 없을 때 쓰는 기본 확률 (forest01 과 같음)
+    static final DropTable DEFAULT = new DropTable(new byte[] { GameBoard.ITEM_BALLOON, GameBoard.ITEM_POWER,
+            GameBoard.ITEM_SPEED, GameBoard.ITEM_NEEDLE }, new int[] { 40, 35, 20, 5 }, 35);
+
+    private final int size;
+    private final byte[] outcome;
+    private final byte[] alias;
+    private final long[] threshold; // 0 ~ 2^32
+
+    public DropTable(byte[] itemIds, int[] itemWeights, int dropPercent) {
+        int drop = Math.max(0, Math.min(100, dropPercent));
+        long totalWeight = 0;
+        for (int w : itemWeights)
+            totalWeight += Math.max(0, w);
+        if (totalWeight == 0)
+            drop = 0;
+        size = itemIds.length + 1;
+        outcome = new byte[size];
+        alias = new byte[size];
+        threshold = new long[size];
+
+        // 결과별 가중치: 아이템 k = w_k * drop, 없음 = W * (100 - drop)
+        double[] scaled = new double[size];
+        double total = 0;
+        outcome[0] = GameBoard.ITEM_NONE;
+        scaled[0] = drop == 0 ? 1 : (double) totalWeight * (100 - drop);
+        total += scaled[0];
+        for (int k = 0; k < itemIds.length; k++) {
+            outcome[k + 1] = itemIds[k];
+            scaled[k + 1] = drop == 0 ? 0 : (double) Math.max(0, itemWeights[k]) * drop;
+            total += scaled[k + 1];
+        }
+        // Vose 의 별칭 테이블 구성 (평균이 1 이 되도록 맞춘 뒤 작은 칸을 큰 칸으로 채운다)
+        int[] small = new int[size], large = new int[size];
+        int smallCount = 0, largeCount = 0;
+        for (int k = 0; k < size; k++) {
+            scaled[k] = scaled[k] * size / total;
+            if (scaled[k] < 1.0)
+                small[smallCount++] = k;
+            else
+                large[largeCount++] = k;
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount], more = large[--largeCount];
+            threshold[less] = (long) (scaled[less] * (1L << 32));
+            alias[less] = outcome[more];
+            scaled[more] = scaled[more] + scaled[less] - 1.0;
+            if (scaled[more] < 1.0)
+                small[smallCount++] = more;
+            else
+                large[largeCount++] = more;
+        }
+        // 남은 칸은 (부동소수 오차 포함) 항상 자기 자신
+        while (largeCount > 0)
+            threshold[large[--largeCount]] = 1L << 32;
+        while (smallCount > 0)
+            threshold[small[--smallCount]] = 1L << 32;
+    }
+
+    public byte sample(FastRandom rng) {
+        long r = rng.nextLong();
+        int column = (int) (((r >>> 32) * size) >>> 32);
+        return (r & 0xFFFFFFFFL) < threshold[column] ? outcome[column] : alias[column];
+    }
+}
+
+// ========================================================
+// [핵심] 맵 파일 (.wbm) - 헤더 / 타일 레이어 / 스폰 지점 / 아이템 테이블
+// ========================================================
+// 파일 구조 (빅 엔디안)
+//   0  int   매직 'WBMP'
+//   4  short 버전
+//   6  byte  가로 칸 수, 7 byte 세로 칸 수
+//   8  byte  스폰 지점 수, 9 byte 아이템 종류 수, 10 byte 블록 파괴 시 아이템 확률(%), 11 byte 이름 길이
+//  12  int   타일 레이어 오프셋, 16 int 스폰 오프셋, 20 int 아이템 테이블 오프셋, 24 int 이름 오프셋
+//  28  (예약)
+//  타일 레이어: 가로*세로 바이트 (GameBoard.TILE_*)
+//  스폰 지점: (x, y) 바이트 쌍
+//  아이템 테이블: (아이템 id 바이트, 가중치 short)
+//  이름: UTF-8
+class MapData {
+    public static final int MAGIC = 0x57424D50; // "WBMP"
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+
+    final String fileName;
+    final String name;
+    final int cols;
+    final int rows;
+    final int dropPercent;
+    final int[][] spawns;
+    final byte[] itemIds;
+    final int[] itemWeights;
+    final DropTable dropTable;
+    // 매핑된 파일의 타일 레이어를 그대로 가리키는 읽기 전용 뷰 (복사 없음)
+    private final java.nio.ByteBuffer tileLayer;
+
+    private MapData(String fileName, java.nio.ByteBuffer buf) {
+        this.fileName = fileName;
+        if (buf.getInt(0) != MAGIC)
+            throw new IllegalArgumentException("맵 파일 형식이 아닙니다: " + fileName);
+        if (buf.getShort(4) != VERSION)
+            throw new IllegalArgumentException("지원하지 않는 맵 버전: " + buf.getShort(4));
+        cols = buf.get(6) & 0xFF;
+        rows = buf.get(7) & 0xFF;
+        if (cols != GameBoard.COLS || rows != GameBoard.ROWS)
+            throw new IllegalArgumentException("맵 크기가 맞지 않습니다: " + cols + "x" + rows);
+        int spawnCount = buf.get(8) & 0xFF;
+        int itemCount = buf.get(9) & 0xFF;
+        dropPercent = buf.get(10) & 0xFF;
+        int nameLength = buf.get(11) & 0xFF;
+        int tileOffset = buf.getInt(12);
+        int spawnOffset = buf.getInt(16);
+        int itemOffset = buf.getInt(20);
+        int nameOffset = buf.getInt(24);
+
+        tileLayer = buf.duplicate().position(tileOffset).limit(tileOffset + cols * rows).slice().asReadOnlyBuffer();
+
+        spawns = new int[spawnCount][2];
+        for (int s = 0; s < spawnCount; s++) {
+            spawns[s][0] = buf.get(spawnOffset + s * 2) & 0xFF;
+            spawns[s][1] = buf.get(spawnOffset + s * 2 + 1) & 0xFF;
+        }
+        itemIds = new byte[itemCount];
+        itemWeights = new int[itemCount];
+        for (int k = 0; k < itemCount; k++) {
+            itemIds[k] = buf.get(itemOffset + k * 3);
+            itemWeights[k] = buf.getShort(itemOffset + k * 3 + 1) & 0xFFFF;
+        }
+        byte[] nameBytes = new byte[nameLength];
+        buf.get(nameOffset, nameBytes);
+        name = new String(nameBytes, java.nio.charset.StandardCharsets.UTF_8);
+        // 블록이 부서질 때마다 계산하지 않도록 맵을 읽을 때 한 번 만들어 둔다
+        dropTable = new DropTable(itemIds, itemWeights, dropPercent);
+    }
+
+    public static MapData load(java.nio.file.Path path) throws java.io.IOException {
+        try (java.nio.channels.FileChannel ch = java.nio.channels.FileChannel.open(path,
+                java.nio.file.StandardOpenOption.READ)) {
+            // 채널을 닫아도 매핑은 유지된다
+            java.nio.MappedByteBuffer buf = ch.map(java.nio.channels.FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            return new MapData(path.getFileName().toString(), buf);
+        }
+    }
+
+    public byte tileAt(int x, int y) {
+        return tileLayer.get(y * cols + x);
+    }
+
+    public void copyTiles(byte[] dst) {
+        tileLayer.get(0, dst, 0, cols * rows);
+    }
+
+    public static void write(java.nio.file.Path path, String name, byte[] tiles, int[][] spawns, byte[] itemIds,
+            int[] itemWeights, int dropPercent) throws java.io.IOException {
+        byte[] nameBytes = name.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        int tileOffset = HEADER_SIZE;
+        int spawnOffset = tileOffset + tiles.length;
+        int itemOffset = spawnOffset + spawns.length * 2;
+        int nameOffset = itemOffset + itemIds.length * 3;
+        java.nio.ByteBuffer buf = java.nio.ByteBuffer.allocate(nameOffset + nameBytes.length);
+        buf.putInt(MAGIC).putShort(VERSION);
+        buf.put((byte) GameBoard.COLS).put((byte) GameBoard.ROWS);
+        buf.put((byte) spawns.length).put((byte) itemIds.length).put((byte) dropPercent).put((byte) nameBytes.length);
+        buf.putInt(tileOffset).putInt(spawnOffset).putInt(itemOffset).putInt(nameOffset);
+        buf.position(tileOffset);
+        buf.put(tiles);
+        for (int[] s : spawns)
+            buf.put((byte) s[0]).put((byte) s[1]);
+        for (int k = 0; k < itemIds.length; k++)
+            buf.put(itemIds[k]).putShort((short) itemWeights[k]);
+        buf.put(nameBytes);
+        java.nio.file.Files.write(path, buf.array());
+    }
+
+    // 기본 맵 생성기: java MapData <출력 폴더>
+    public static void main(String[] args) throws java.io.IOException {
+        java.nio.file.Path dir = java.nio.file.Paths.get(args.length > 0 ? args[0] : "maps");
+        java.nio.file.Files.createDirectories(dir);
+        // 아이템 id: 1 물풍선+, 2 물줄기+, 3 속도+, 4 바늘
+        writeGenerated(dir.resolve("forest01.wbm"), "숲속마을 01", 1L, 60,
+                new byte[] { 1, 2, 3, 4 }, new int[] { 40, 35, 20, 5 }, 35);
+        writeGenerated(dir.resolve("plaza02.wbm"), "바나나 광장 02", 2L, 35,
+                new byte[] { 1, 2, 3 }, new int[] { 30, 30, 40 }, 50);
+        writeGenerated(dir.resolve("cookie03.wbm"), "초코 쿠키 03", 3L, 80,
+                new byte[] { 1, 2, 3, 4 }, new int[] { 25, 50, 15, 10 }, 25);
+    }
+
+    private static void writeGenerated(java.nio.file.Path path, String name, long seed, int blockPercent,
+            byte[] itemIds, int[] itemWeights, int dropPercent) throws java.io.IOException {
+        GameBoard board = new GameBoard();
+        board.generateDefault(seed);
+        java.util.Random rnd = new java.util.Random(seed);
+        for (int i = 0; i < GameBoard.TILE_COUNT; i++) {
+            if (board.tiles[i] == GameBoard.TILE_BLOCK && rnd.nextInt(60) >= blockPercent)
+                board.tiles[i] = GameBoard.TILE_EMPTY;
+            else if (board.tiles[i] == GameBoard.TILE_EMPTY && blockPercent > 60 && rnd.nextInt(100) < blockPercent - 60)
+                board.tiles[i] = GameBoard.TILE_BLOCK;
+        }
+        // 스폰 지점 주변은 다시 비운다
+        for (int[] s : GameBoard.SPAWNS) {
+            for (int d = 0; d <= 4; d++) {
+                int nx = s[0] + GameBoard.DX[d], ny = s[1] + GameBoard.DY[d];
+                if (GameBoard.inBounds(nx, ny) && board.tiles[GameBoard.index(nx, ny)] == GameBoard.TILE_BLOCK)
+                    board.tiles[GameBoard.index(nx, ny)] = GameBoard.TILE_EMPTY;
+            }
+        }
+        write(path, name, board.tiles, GameBoard.SPAWNS, itemIds, itemWeights, dropPercent);
+    }
+}
+
+// ========================================================
+// [핵심] 맵 캐시 - 최근에 불러온 맵과 미리보기 이미지를 보관 (LRU)
+// ========================================================
+class MapCache {
+    private static final int CAPACITY = 4;
+    private static final int PREVIEW_TILE = 12;
+
+    private static final java.util.LinkedHashMap<String, MapData> maps = new java.util.LinkedHashMap<String, MapData>(
+            8, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(java.util.Map.Entry<String, MapData> eldest) {
+            if (size() > CAPACITY) {
+                previews.remove(eldest.getKey());
+                return true;
+            }
+            return false;
+        }
+    };
+    private static final java.util.HashMap<String, java.awt.image.BufferedImage> previews = new java.util.HashMap<>();
+
+    public static java.nio.file.Path mapDir() {
+        return java.nio.file.Paths.get(System.getProperty("user.dir"), "maps");
+    }
+
+    // maps 폴더의 맵 파일 목록 (이름순)
+    public static String[] list() {
+        String[] names = mapDir().toFile().list((dir, n) -> n.endsWith(".wbm"));
+        if (names == null)
+            return new String[0];
+        java.util.Arrays.sort(names);
+        return names;
+    }
+
+    public static synchronized MapData get(String fileName) {
+        MapData map = maps.get(fileName);
+        if (map == null) {
+            try {
+                map = MapData.load(mapDir().resolve(fileName));
+                maps.put(fileName, map);
+            } catch (Exception e) {
+                System.err.println("맵 로드 실패: " + fileName + " (" + e.getMessage() + ")");
+                return null;
+            }
+        }
+        return map;
+    }
+
+    public static synchronized java.awt.image.BufferedImage preview(String fileName) {
+        java.awt.image.BufferedImage img = previews.get(fileName);
+        if (img != null) {
+            maps.get(fileName); // LRU 순서 갱신
+            return img;
+        }
+        MapData map = get(fileName);
+        if (map == null)
+            return null;
+        img = new java.awt.image.BufferedImage(map.cols * PREVIEW_TILE, map.rows * PREVIEW_TILE,
+                java.awt.image.BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = img.createGraphics();
+        for (int y = 0; y < map.rows; y++) {
+            for (int x = 0; x < map.cols; x++) {
+                byte tile = map.tileAt(x, y);
+                if (tile == GameBoard.TILE_WALL)
+                    g2.setColor(ThemeColors.DARK);
+                else if (tile == GameBoard.TILE_BLOCK)
+                    g2.setColor(ThemeColors.ACCENT);
+                else
+                    g2.setColor(ThemeColors.BG);
+                g2.fillRect(x * PREVIEW_TILE, y * PREVIEW_TILE, PREVIEW_TILE, PREVIEW_TILE);
+            }
+        }
+        g2.setColor(new Color(230, 60, 60));
+        for (int[] s : map.spawns)
+            g2.fillOval(s[0] * PREVIEW_TILE + 2, s[1] * PREVIEW_TILE + 2, PREVIEW_TILE - 4, PREVIEW_TILE - 4);
+        g2.dispose();
+        previews.put(fileName, img);
+        return img;
+    }
+}
+
+// ========================================================
+// [핵심] 경기 기록 - 추가만 하는 체크섬 바이너리 로그 + 기록 스레드에서 묶어서 쓰기
+// ========================================================
+// 파일 구조: 헤더 8바이트 ('WBML' / 버전 short / 예약 short) + 32바이트 고정 레코드의 연속
+//   레코드: 시각(long) / 시드(long) / 틱 수(int) / 맵 이름 해시(int) / 인원(byte) / CPU 수(byte)
+//           / 승자 슬롯(byte, -1 무승부) / 1P 캐릭터(byte) / CRC32C(int, 앞 28바이트)
+// 시작할 때 한 번 훑어서 MatchStats 색인을 다시 만들고, 깨진 꼬리(쓰다 만 레코드)는 잘라낸다.
+class MatchLog {
+    public static final int MAGIC = 0x57424D4C; // "WBML"
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 8;
+    public static final int PAYLOAD_SIZE = 28;
+    public static final int RECORD_SIZE = PAYLOAD_SIZE + 4;
+    private static final int MAX_BATCH = 256;
+    private static final int SCAN_RECORDS = 4096; // 시작할 때 한 번에 읽는 레코드 수 (128KB)
+
+    static final class Record {
+        final long timestamp;
+        final long seed;
+        final int ticks;
+        final int mapHash;
+        final int players;
+        final int bots;
+        final int winner; // 0 = 1P, 1 = 2P, 2 이상 = CPU, -1 = 무승부
+        final int character; // 1P 캐릭터 (MatchStats.CHARACTERS 의 번호)
+
+        Record(long timestamp, long seed, int ticks, int mapHash, int players, int bots, int winner, int character) {
+            this.timestamp = timestamp;
+            this.seed = seed;
+            this.ticks = ticks;
+            this.mapHash = mapHash;
+            this.players = players;
+            this.bots = bots;
+            this.winner = winner;
+            this.character = character;
+        }
+
+        void writeTo(java.nio.ByteBuffer buf, java.util.zip.CRC32C crc) {
+            int start = buf.position();
+            buf.putLong(timestamp).putLong(seed).putInt(ticks).putInt(mapHash);
+            buf.put((byte) players).put((byte) bots).put((byte) winner).put((byte) character);
+            crc.reset();
+            crc.update(buf.duplicate().position(start).limit(start + PAYLOAD_SIZE));
+            buf.putInt((int) crc.getValue());
+        }
+
+        // 체크섬이 맞지 않으면 null
+        static Record readFrom(java.nio.ByteBuffer buf, int at, java.util.zip.CRC32C crc) {
+            crc.reset();
+            crc.update(buf.duplicate().position(at).limit(at + PAYLOAD_SIZE));
+            if ((int) crc.getValue() != buf.getInt(at + PAYLOAD_SIZE))
+                return null;
+            return new Record(buf.getLong(at), buf.getLong(at + 8), buf.getInt(at + 16), buf.getInt(at + 20),
+                    buf.get(at + 24), buf.get(at + 25), buf.get(at + 26), buf.get(at + 27));
+        }
+    }
+
+    private static final java.util.concurrent.LinkedBlockingQueue<Record> queue = new java.util.concurrent.LinkedBlockingQueue<>();
+    private static final java.util.zip.CRC32C writeCrc = new java.util.zip.CRC32C();
+    private static final java.nio.ByteBuffer batchBuffer = java.nio.ByteBuffer.allocateDirect(MAX_BATCH * RECORD_SIZE);
+    private static java.nio.channels.FileChannel channel;
+    private static volatile boolean loaded;
+
+    public static java.io.File file() {
+        return new java.io.File(System.getProperty("user.dir"), "matches.wbml");
+    }
+
+    public static boolean isLoaded() {
+        return loaded;
+    }
+
+    // 시작할 때 I/O 스레드에서 한 번: 로그를 훑어 색인을 만들고 기록 스레드를 띄운다
+    public static synchronized void open() {
+        if (channel != null)
+            return;
+        long start = System.nanoTime();
+        int count = 0;
+        MatchStats.registerMaps(MapCache.list());
+        try {
+            channel = java.nio.channels.FileChannel.open(file().toPath(), java.nio.file.StandardOpenOption.CREATE,
+                    java.nio.file.StandardOpenOption.READ, java.nio.file.StandardOpenOption.WRITE);
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                java.nio.ByteBuffer header = java.nio.ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putShort(VERSION).putShort((short) 0).flip();
+                channel.truncate(0);
+                channel.write(header, 0);
+                size = HEADER_SIZE;
+            } else {
+                // 매핑하지 않고 읽는다: 매핑이 살아 있으면 Windows 에서는 아래 truncate 가 실패한다
+                java.nio.ByteBuffer buf = java.nio.ByteBuffer.allocate(SCAN_RECORDS * RECORD_SIZE);
+                buf.limit(HEADER_SIZE);
+                readFully(buf, 0);
+                if (buf.getInt(0) != MAGIC || buf.getShort(4) != VERSION)
+                    throw new java.io.IOException("경기 기록 파일 형식이 아닙니다");
+                java.util.zip.CRC32C crc = new java.util.zip.CRC32C();
+                long good = HEADER_SIZE;
+                scan: while (good + RECORD_SIZE <= size) {
+                    int records = (int) Math.min(SCAN_RECORDS, (size - good) / RECORD_SIZE);
+                    buf.clear().limit(records * RECORD_SIZE);
+                    readFully(buf, good);
+                    for (int k = 0; k < records; k++) {
+                        Record r = Record.readFrom(buf, k * RECORD_SIZE, crc);
+                        if (r == null)
+                            break scan;
+                        MatchStats.add(r);
+                        count++;
+                        good += RECORD_SIZE;
+                    }
+                }
+                if (good != size) {
+                    System.err.println("경기 기록 끝부분이 깨져 잘라냅니다: " + (size - good) + "바이트");
+                    channel.truncate(good);
+                    size = good;
+                }
+            }
+            channel.position(size);
+        } catch (java.io.IOException e) {
+            System.err.println("경기 기록을 열 수 없습니다: " + e.getMessage());
+            channel = null;
+            return;
+        } finally {
+            loaded = true;
+        }
+        System.out.printf("경기 기록 %d개 불러옴 (%.1fms)%n", count, (System.nanoTime() - start) / 1e6);
+
+        Thread writer = new Thread(MatchLog::writerLoop, "match-log");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(MatchLog::flush, "match-log-flush"));
+    }
+
+    private static void readFully(java.nio.ByteBuffer buf, long position) throws java.io.IOException {
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, position);
+            if (n < 0)
+                throw new java.io.EOFException("경기 기록이 예상보다 짧습니다");
+            position += n;
+        }
+    }
+
+    // 게임 스레드에서 호출: 색인에는 바로 반영하고, 파일 쓰기는 기록 스레드에 맡긴다 (막히지 않음)
+    public static void record(Record r) {
+        MatchStats.add(r);
+        queue.offer(r);
+    }
+
+    private static void writerLoop() {
+        java.util.List<Record> batch = new java.util.ArrayList<>(MAX_BATCH);
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+                writeBatch(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // 종료할 때 남은 기록을 마저 쓴다
+    private static void flush() {
+        java.util.List<Record> batch = new java.util.ArrayList<>(MAX_BATCH);
+        while (queue.drainTo(batch, MAX_BATCH) > 0) {
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    // 한 묶음을 한 번의 write + force 로 (레코드마다 디스크 동기화하지 않는다)
+    private static synchronized void writeBatch(java.util.List<Record> batch) {
+        if (channel == null || batch.isEmpty())
+            return;
+        batchBuffer.clear();
+        for (Record r : batch)
+            r.writeTo(batchBuffer, writeCrc);
+        batchBuffer.flip();
+        try {
+            while (batchBuffer.hasRemaining())
+                channel.write(batchBuffer);
+            channel.force(false);
+        } catch (java.io.IOException e) {
+            System.err.println("경기 기록 저장 실패: " + e.getMessage());
+        }
+    }
+}
+
+// ========================================================
+// [핵심] 경기 통계 색인 - 로그 전체를 다시 읽지 않고 로비에서 바로 답할 수 있는 작은 요약
+// ========================================================
+class MatchStats {
+    static final String[] CHARACTERS = { "배찌", "다오" };
+    static final int TOP_SIZE = 5;
+
+    private static int total;
+    private static int draws;
+    private static final int[] characterGames = new int[CHARACTERS.length];
+    private static final int[] characterWins = new int[CHARACTERS.length];
+    private static final int[] slotWins = new int[3]; // 1P / 2P / CPU
+    // 가장 빨리 끝난 승리 (틱 오름차순, 정렬된 채로 유지)
+    private static final MatchLog.Record[] fastest = new MatchLog.Record[TOP_SIZE];
+    private static int fastestCount;
+
+    public static int characterIndex(String name) {
+        for (int k = 0; k < CHARACTERS.length; k++)
+            if (CHARACTERS[k].equals(name))
+                return k;
+        return 0;
+    }
+
+    static synchronized void add(MatchLog.Record r) {
+        total++;
+        if (r.character >= 0 && r.character < CHARACTERS.length) {
+            characterGames[r.character]++;
+            if (r.winner == 0)
+                characterWins[r.character]++;
+        }
+        if (r.winner < 0) {
+            draws++;
+            return;
+        }
+        slotWins[Math.min(r.winner, 2)]++;
+        if (fastestCount == TOP_SIZE && r.ticks >= fastest[TOP_SIZE - 1].ticks)
+            return;
+        int k = Math.min(fastestCount, TOP_SIZE - 1);
+        while (k > 0 && fastest[k - 1].ticks > r.ticks) {
+            fastest[k] = fastest[k - 1];
+            k--;
+        }
+        fastest[k] = r;
+        fastestCount = Math.min(TOP_SIZE, fastestCount + 1);
+    }
+
+    public static synchronized int getTotal() {
+        return total;
+    }
+
+    public static synchronized int getDraws() {
+        return draws;
+    }
+
+    public static synchronized int getSlotWins(int slot) {
+        return slotWins[slot];
+    }
+
+    public static synchronized int getGames(int character) {
+        return characterGames[character];
+    }
+
+    public static synchronized int getWins(int character) {
+        return characterWins[character];
+    }
+
+    public static synchronized MatchLog.Record[] getFastestWins() {
+        return java.util.Arrays.copyOf(fastest, fastestCount);
+    }
+
+    public static String winnerLabel(int winner) {
+        return winner == 0 ? "1P" : winner == 1 ? "2P" : "CPU";
+    }
+
+    // 맵 파일 이름 해시 (레코드를 고정 크기로 두기 위해 이름 대신 저장)
+    public static int mapHash(String fileName) {
+        return (int) AssetArchive.hash(fileName.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+    }
+
+    // 해시 -> 맵 파일 이름. 폴더 목록은 MatchLog.open 이 I/O 스레드에서 한 번 넣어 준다 (EDT 에서 디스크를 읽지 않도록)
+    private static final java.util.Map<Integer, String> mapNames = new java.util.HashMap<>();
+
+    static synchronized void registerMaps(String[] fileNames) {
+        for (String f : fileNames)
+            mapNames.put(mapHash(f), f);
+    }
+
+    public static synchronized String mapName(int mapHash) {
+        return mapNames.getOrDefault(mapHash, "기본 맵");
+    }
+}
+
+// ========================================================
+// [핵심] 지연 시간 히스토그램 (HdrHistogram 방식의 로그-선형 버킷, 락 없음)
+// ========================================================
+// 마이크로초 단위로 기록하며, 2의 거듭제곱 구간마다 64개 버킷으로 나눠 상대 오차 1.6% 이내.
+// 여러 스레드가 동시에 record 해도 AtomicLongArray 로 안전하다.
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS; // 128
+    private static final int HALF = SUB_BUCKETS / 2;
+    private static final int MAX_SHIFT = 36; // 약 2^43us (충분히 큼)
+
+    final String name;
+    private final java.util.concurrent.atomic.AtomicLongArray counts = new java.util.concurrent.atomic.AtomicLongArray(
+            SUB_BUCKETS + MAX_SHIFT * HALF);
+    private final java.util.concurrent.atomic.AtomicLong total = new java.util.concurrent.atomic.AtomicLong();
+    private final java.util.concurrent.atomic.AtomicLong sum = new java.util.concurrent.atomic.AtomicLong();
+    private final java.util.concurrent.atomic.AtomicLong max = new java.util.concurrent.atomic.AtomicLong();
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(indexOf(micros));
+        total.incrementAndGet();
+        sum.addAndGet(micros);
+        max.accumulateAndGet(micros, Math::max);
+    }
+
+    private static int indexOf(long v) {
+        if (v < SUB_BUCKETS)
+            return (int) v;
+        int shift = 63 - Long.numberOfLeadingZeros(v) - (SUB_BUCKET_BITS - 1);
+        if (shift > MAX_SHIFT)
+            return SUB_BUCKETS + MAX_SHIFT * HALF - 1;
+        return SUB_BUCKETS + (shift - 1) * HALF + (int) ((v >> shift) - HALF);
+    }
+
+    // 버킷에 들어가는 가장 큰 값 (HdrHistogram 의 highestEquivalentValue 와 같음)
+    private static long highestValueAt(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+        int k = index - SUB_BUCKETS;
+        int shift = k / HALF + 1;
+        long sub = k % HALF + HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    public long getCount() {
+        return total.get();
+    }
+
+    public long getMaxMicros() {
+        return max.get();
+    }
+
+    public double getMeanMicros() {
+        long n = total.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    // 백분위 (0~100) 값, 마이크로초
+    public long percentileMicros(double percentile) {
+        long n = total.get();
+        if (n == 0)
+            return 0;
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target)
+                return Math.min(highestValueAt(i), max.get());
+        }
+        return max.get();
+    }
+
+    // HdrHistogram 의 outputPercentileDistribution 과 같은 형식 (밀리초 단위) - HistogramLogAnalyzer 등으로 바로 열 수 있다
+    public void writePercentiles(java.io.PrintWriter out) {
+        long n = total.get();
+        out.printf("%12s %14s %10s %14s%n%n", "Value", "Percentile", "TotalCount", "1/(1-Percentile)");
+        if (n > 0) {
+            for (int level = 0; level < 20; level++) {
+                double lo = 100.0 * (1 - Math.pow(0.5, level));
+                double hi = 100.0 * (1 - Math.pow(0.5, level + 1));
+                for (int k = 0; k < 5; k++) {
+                    double p = lo + (hi - lo) * k / 5;
+                    long count = Math.max(1, (long) Math.ceil(p / 100.0 * n));
+                    out.printf("%12.3f %2.12f %10d %14.2f%n", percentileMicros(p) / 1000.0, p / 100.0, count,
+                            1 / (1 - p / 100.0));
+                }
+                if ((long) Math.ceil(hi / 100.0 * n) >= n)
+                    break;
+            }
+            out.printf("%12.3f %2.12f %10d%n", max.get() / 1000.0, 1.0, n);
+        }
+        double mean = getMeanMicros();
+        double variance = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            long c = counts.get(i);
+            if (c > 0) {
+                double d = Math.min(highestValueAt(i), max.get()) - mean;
+                variance += d * d * c;
+            }
+        }
+        double stdDev = n == 0 ? 0 : Math.sqrt(variance / n);
+        out.printf("#[Mean    = %12.3f, StdDeviation   = %12.3f]%n", mean / 1000.0, stdDev / 1000.0);
+        out.printf("#[Max     = %12.3f, Total count    = %12d]%n", max.get() / 1000.0, n);
+        out.printf("#[Buckets = %12d, SubBuckets     = %12d]%n", MAX_SHIFT + 1, SUB_BUCKETS);
+    }
+}
+
+// ========================================================
+// [핵심] 성능 계측 - EDT 이벤트 / 렌더링 / 게임 틱 / GC 시간을 히스토그램에 기록
+// ========================================================
+class Metrics {
+    public static final LatencyHistogram EDT = new LatencyHistogram("edt");
+    public static final LatencyHistogram RENDER = new LatencyHistogram("render");
+    public static final LatencyHistogram FRAME = new LatencyHistogram("frame");
+    public static final LatencyHistogram TICK = new LatencyHistogram("tick");
+    public static final LatencyHistogram GC = new LatencyHistogram("gc");
+
+    private static final java.util.concurrent.atomic.AtomicLong frames = new java.util.concurrent.atomic.AtomicLong();
+    private static volatile long lastFrameNanos;
+    private static volatile long lastGcMillis;
+    private static volatile long lastTickAllocBytes = -1;
+    private static volatile int lastEntityCount;
+    private static boolean installed;
+
+    // 현재 스레드가 할당한 누적 바이트 (HotSpot 확장 API, 없으면 -1)
+    private static final java.lang.management.ThreadMXBean THREADS = java.lang.management.ManagementFactory
+            .getThreadMXBean();
+
+    // main 에서 한 번 호출: 이벤트 큐 / RepaintManager 교체, GC 알림 등록, 종료 시 덤프
+    public static synchronized void install() {
+        if (installed)
+            return;
+        installed = true;
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(new InstrumentedEventQueue());
+        SwingUtilities.invokeLater(() -> RepaintManager.setCurrentManager(new InstrumentedRepaintManager()));
+        installGcListener();
+        EdtWatchdog.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Metrics::dump, "metrics-dump"));
+    }
+
+    private static void installGcListener() {
+        for (java.lang.management.GarbageCollectorMXBean gc : java.lang.management.ManagementFactory
+                .getGarbageCollectorMXBeans()) {
+            if (!(gc instanceof javax.management.NotificationEmitter))
+                continue;
+            ((javax.management.NotificationEmitter) gc).addNotificationListener((notification, handback) -> {
+                if (!com.sun.management.GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION
+                        .equals(notification.getType()))
+                    return;
+                com.sun.management.GarbageCollectionNotificationInfo info = com.sun.management.GarbageCollectionNotificationInfo
+                        .from((javax.management.openmbean.CompositeData) notification.getUserData());
+                long millis = info.getGcInfo().getDuration();
+                lastGcMillis = millis;
+                GC.record(millis * 1_000_000L);
+            }, null, null);
+        }
+    }
+
+    static void frameRendered(long startNanos, long endNanos) {
+        RENDER.record(endNanos - startNanos);
+        long last = lastFrameNanos;
+        // 연속 애니메이션 중의 프레임 간격만 기록 (화면이 멈춰 있던 시간은 제외)
+        if (last != 0 && endNanos - last < 1_000_000_000L)
+            FRAME.record(endNanos - last);
+        lastFrameNanos = endNanos;
+        frames.incrementAndGet();
+    }
+
+    public static long getFrameCount() {
+        return frames.get();
+    }
+
+    public static long getLastGcMillis() {
+        return lastGcMillis;
+    }
+
+    public static long threadAllocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) THREADS).getCurrentThreadAllocatedBytes();
+        return -1;
+    }
+
+    // 게임 틱 한 번 동안 할당된 바이트 (엔티티 배열이 재사용되면 0 근처여야 한다)
+    static void tickAllocated(long beforeBytes, int entityCount) {
+        if (beforeBytes >= 0)
+            lastTickAllocBytes = threadAllocatedBytes() - beforeBytes;
+        lastEntityCount = entityCount;
+    }
+
+    public static long getLastTickAllocBytes() {
+        return lastTickAllocBytes;
+    }
+
+    public static int getLastEntityCount() {
+        return lastEntityCount;
+    }
+
+    // 백분위 결과를 metrics/<시각>-<이름>.hgrm 파일로 저장
+    public static void dump() {
+        java.io.File dir = new java.io.File(System.getProperty("user.dir"), "metrics");
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            System.err.println("metrics 폴더를 만들 수 없습니다: " + dir);
+            return;
+        }
+        String stamp = new java.text.SimpleDateFormat("yyyyMMdd-HHmmss").format(new java.util.Date());
+        for (LatencyHistogram h : new LatencyHistogram[] { EDT, RENDER, FRAME, TICK, GC }) {
+            if (h.getCount() == 0)
+                continue;
+            java.io.File file = new java.io.File(dir, stamp + "-" + h.name + ".hgrm");
+            try (java.io.PrintWriter out = new java.io.PrintWriter(file, "UTF-8")) {
+                h.writePercentiles(out);
+            } catch (java.io.IOException e) {
+                System.err.println("계측 결과 저장 실패: " + e.getMessage());
+            }
+        }
+        EdtWatchdog.dump(new java.io.File(dir, stamp + "-edt-stalls.txt"));
+        System.out.println("계측 결과 저장: " + dir);
+    }
+}
+
+// EDT 에서 처리되는 모든 이벤트의 처리 시간을 잰다
+class InstrumentedEventQueue extends EventQueue {
+    @Override
+    protected void dispatchEvent(AWTEvent event) {
+        long start = System.nanoTime();
+        long seq = EdtWatchdog.beginDispatch(event, start);
+        try {
+            super.dispatchEvent(event);
+        } finally {
+            long end = System.nanoTime();
+            EdtWatchdog.endDispatch(seq, end - start);
+            Metrics.EDT.record(end - start);
+        }
+    }
+}
+
+// Swing 의 한 번의 화면 그리기(dirty 영역 처리) 시간을 잰다
+class InstrumentedRepaintManager extends RepaintManager {
+    // 확대 중인 뷰포트 안쪽의 repaint 요청은 뷰포트의 확대된 영역으로 바꿔서 받는다
+    @Override
+    public void addDirtyRegion(JComponent c, int x, int y, int w, int h) {
+        ScaledViewport vp = ScaledViewport.active;
+        if (vp != null && c != vp && vp.isScaling() && SwingUtilities.isDescendingFrom(c, vp.content)) {
+            Rectangle r = SwingUtilities.convertRectangle(c, new Rectangle(x, y, w, h), vp.content);
+            Rectangle scaled = vp.toViewport(r);
+            super.addDirtyRegion(vp, scaled.x, scaled.y, scaled.width, scaled.height);
+            return;
+        }
+        super.addDirtyRegion(c, x, y, w, h);
+    }
+
+    @Override
+    public void paintDirtyRegions() {
+        long start = System.nanoTime();
+        super.paintDirtyRegions();
+        Metrics.frameRendered(start, System.nanoTime());
+    }
+}
+
+// ========================================================
+// [핵심] 성능 오버레이 (글래스 패인) - F3 으로 토글
+// ========================================================
+class MetricsOverlay extends JComponent {
+    private final Timer refreshTimer;
+    private long lastFrames;
+    private long lastSample;
+    private double fps;
+
+    public MetricsOverlay() {
+        setOpaque(false);
+        refreshTimer = new Timer(500, e -> {
+            long now = System.nanoTime();
+            long frames = Metrics.getFrameCount();
+            if (lastSample != 0)
+                fps = (frames - lastFrames) * 1e9 / (now - lastSample);
+            lastFrames = frames;
+            lastSample = now;
+            repaint();
+        });
+    }
+
+    public void toggle() {
+        setVisible(!isVisible());
+        if (isVisible()) {
+            lastSample = 0;
+            refreshTimer.start();
+        } else {
+            refreshTimer.stop();
+        }
+    }
+
+    // 오버레이가 재는 프레임에 할당을 더하지 않도록 폰트/색/문자열 버퍼는 미리 만들어 두고 재사용한다
+    private static final Font FONT = new Font(Font.MONOSPACED, Font.BOLD, 12);
+    private static final Color BACKGROUND = new Color(0, 0, 0, 170);
+    private static final int LINE_COUNT = 8;
+    private final StringBuilder[] lines = new StringBuilder[LINE_COUNT];
+    private char[] chars = new char[64];
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g;
+        appendFixed(line(0).append("FPS "), Math.round(fps * 10), 1);
+        appendPair(line(1).append("frame"), Metrics.FRAME);
+        appendPair(line(2).append("render"), Metrics.RENDER);
+        StringBuilder sb = appendMillis(line(3).append("EDT p99 "), Metrics.EDT.percentileMicros(99), 2);
+        appendMillis(sb.append("ms  max "), Metrics.EDT.getMaxMicros(), 1).append("ms");
+        appendPair(line(4).append("tick"), Metrics.TICK);
+        line(5).append("tick alloc ").append(Metrics.getLastTickAllocBytes()).append("B  entities ")
+                .append(Metrics.getLastEntityCount());
+        sb = line(6).append("GC ").append(Metrics.GC.getCount()).append("회  last ").append(Metrics.getLastGcMillis())
+                .append("ms  p99 ");
+        appendMillis(sb, Metrics.GC.percentileMicros(99), 1).append("ms");
+        line(7).append("EDT stall ").append(EdtWatchdog.getStallCount()).append("회 (>")
+                .append(EdtWatchdog.THRESHOLD_NANOS / 1_000_000).append("ms)");
+
+        g2.setFont(FONT);
+        FontMetrics fm = g2.getFontMetrics();
+        int width = 0;
+        for (StringBuilder line : lines)
+            width = Math.max(width, fm.charsWidth(chars(line), 0, line.length()));
+        g2.setColor(BACKGROUND);
+        g2.fillRoundRect(8, 8, width + 16, LINE_COUNT * fm.getHeight() + 12, 10, 10);
+        g2.setColor(ThemeColors.MAIN);
+        for (int i = 0; i < LINE_COUNT; i++)
+            g2.drawChars(chars(lines[i]), 0, lines[i].length(), 16, 14 + fm.getAscent() + i * fm.getHeight());
+    }
+
+    private StringBuilder line(int i) {
+        if (lines[i] == null)
+            lines[i] = new StringBuilder(64);
+        lines[i].setLength(0);
+        return lines[i];
+    }
+
+    private char[] chars(StringBuilder line) {
+        if (chars.length < line.length())
+            chars = new char[line.length()];
+        line.getChars(0, line.length(), chars, 0);
+        return chars;
+    }
+
+    // "<이름> p50 x.xxms  p99 x.xxms"
+    private static void appendPair(StringBuilder sb, LatencyHistogram h) {
+        appendMillis(sb.append(" p50 "), h.percentileMicros(50), 2);
+        appendMillis(sb.append("ms  p99 "), h.percentileMicros(99), 2).append("ms");
+    }
+
+    // 마이크로초를 ms 소수 decimals(1~2) 자리로 (String.format("%.Nf") 와 같은 반올림, 객체 없이)
+    private static StringBuilder appendMillis(StringBuilder sb, long micros, int decimals) {
+        long divisor = decimals == 1 ? 100 : 10;
+        return appendFixed(sb, (micros + divisor / 2) / divisor, decimals);
+    }
+
+    // scaled = 값 * 10^decimals (음수 아님)
+    private static StringBuilder appendFixed(StringBuilder sb, long scaled, int decimals) {
+        long scale = decimals == 1 ? 10 : 100;
+        sb.append(scaled / scale).append('.');
+        long frac = scaled % scale;
+        if (decimals == 2 && frac < 10)
+            sb.append('0');
+        return sb.append(frac);
+    }
+}
+
+// ========================================================
+// [핵심] EDT 멈춤 감시 - 오래 걸리는 UI 작업의 스택을 잡아 링 버퍼에 보관
+// ========================================================
+// InstrumentedEventQueue 가 이벤트 시작/끝을 알려주고, 감시 스레드는 주기적으로
+// 현재 이벤트가 기준 시간을 넘겼는지 확인해서 그 순간 EDT 의 스택을 찍어 둔다.
+class EdtWatchdog {
+    public static final long THRESHOLD_NANOS = Long.getLong("waterbomb.stallMillis", 100) * 1_000_000L;
+    private static final int RING_SIZE = 64;
+
+    // EDT 가 쓰고 감시 스레드가 읽는 현재 이벤트 정보
+    private static volatile Thread edt;
+    private static volatile long currentSeq;
+    private static volatile long currentStart;
+    private static volatile AWTEvent currentEvent;
+    private static volatile long capturedSeq = -1;
+    private static long nextSeq;
+
+    private static final StallRecord[] ring = new StallRecord[RING_SIZE];
+    private static int ringHead;
+    private static final java.util.concurrent.atomic.AtomicLong stallCount = new java.util.concurrent.atomic.AtomicLong();
+
+    static class StallRecord {
+        final long seq;
+        final long wallClock;
+        final String event;
+        final StackTraceElement[] stack;
+        volatile long durationNanos = -1; // 이벤트가 끝나면 채워짐
+
+        StallRecord(long seq, String event, StackTraceElement[] stack) {
+            this.seq = seq;
+            this.wallClock = System.currentTimeMillis();
+            this.event = event;
+            this.stack = stack;
+        }
+    }
+
+    public static void start() {
+        Thread t = new Thread(EdtWatchdog::run, "edt-watchdog");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // EDT 에서만 호출된다
+    static long beginDispatch(AWTEvent event, long startNanos) {
+        edt = Thread.currentThread();
+        long seq = ++nextSeq;
+        currentEvent = event;
+        currentStart = startNanos;
+        currentSeq = seq;
+        return seq;
+    }
+
+    static void endDispatch(long seq, long durationNanos) {
+        currentSeq = 0;
+        currentEvent = null;
+        if (capturedSeq == seq) {
+            synchronized (ring) {
+                for (StallRecord r : ring) {
+                    if (r != null && r.seq == seq)
+                        r.durationNanos = durationNanos;
+                }
+            }
+        }
+    }
+
+    private static void run() {
+        long pollMillis = Math.max(5, THRESHOLD_NANOS / 1_000_000 / 4);
+        while (true) {
+            try {
+                Thread.sleep(pollMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long seq = currentSeq;
+            Thread thread = edt;
+            if (seq == 0 || thread == null || seq == capturedSeq)
+                continue;
+            if (System.nanoTime() - currentStart < THRESHOLD_NANOS)
+                continue;
+            StackTraceElement[] stack = thread.getStackTrace();
+            if (currentSeq != seq)
+                continue; // 스택을 찍는 사이에 끝났다
+            AWTEvent event = currentEvent;
+            String desc = event != null ? event.getClass().getSimpleName() + " from " + describe(event.getSource())
+                    : "?";
+            capturedSeq = seq;
+            stallCount.incrementAndGet();
+            synchronized (ring) {
+                ring[ringHead] = new StallRecord(seq, desc, stack);
+                ringHead = (ringHead + 1) % RING_SIZE;
+            }
+            System.err.println("EDT 멈춤 감지 (" + THRESHOLD_NANOS / 1_000_000 + "ms 초과): " + desc);
+        }
+    }
+
+    private static String describe(Object source) {
+        if (source == null)
+            return "null";
+        String name = source.getClass().getName();
+        return source instanceof Component && ((Component) source).getName() != null
+                ? name + "[" + ((Component) source).getName() + "]"
+                : name;
+    }
+
+    public static long getStallCount() {
+        return stallCount.get();
+    }
+
+    // 링 버퍼에 남아 있는 기록을 오래된 순서로 파일에 쓴다
+    public static void dump(java.io.File file) {
+        StallRecord[] snapshot = new StallRecord[RING_SIZE];
+        int head;
+        synchronized (ring) {
+            System.arraycopy(ring, 0, snapshot, 0, RING_SIZE);
+            head = ringHead;
+        }
+        if (stallCount.get() == 0)
+            return;
+        java.text.SimpleDateFormat fmt = new java.text.SimpleDateFormat("HH:mm:ss.SSS");
+        try (java.io.PrintWriter out = new java.io.PrintWriter(file, "UTF-8")) {
+            out.printf("# EDT stalls: %d total, threshold %dms, last %d kept%n", stallCount.get(),
+                    THRESHOLD_NANOS / 1_000_000, RING_SIZE);
+            for (int k = 0; k < RING_SIZE; k++) {
+                StallRecord r = snapshot[(head + k) % RING_SIZE];
+                if (r == null)
+                    continue;
+                String duration = r.durationNanos < 0 ? "still running"
+                        : String.format("%.1fms", r.durationNanos / 1e6);
+                out.printf("%n[%s] %s  %s%n", fmt.format(new java.util.Date(r.wallClock)), duration, r.event);
+                for (StackTraceElement e : r.stack)
+                    out.println("    at " + e);
+            }
+        } catch (java.io.IOException e) {
+            System.err.println("EDT 멈춤 기록 저장 실패: " + e.getMessage());
+        }
+    }
+}
+
+// ========================================================
+// [핵심] 부하 시험 - 실제 UI 를 띄워 합성 입력으로 두들기고 누수/프레임 시간을 보고한다
+// ========================================================
+// 사용법: java StressHarness [반복 횟수=200] [게임 시간(초)=60]
+// 디스플레이가 필요하다. 서버/CI 에서는 가상 프레임버퍼로: xvfb-run -a java StressHarness
+// 단계: 화면 전환 연타 -> 키 설정 변경 -> 채팅 도배 -> CPU 6명과 긴 게임
+// 단계마다 GC 후 힙 사용량, 숨은 화면의 돌고 있는 타이머, 남은 스레드, 열린 오디오 라인, 키 리스너 누적을 잰다.
+// 누수가 하나라도 있으면 종료 코드 1 (자동 검사용). 설정 파일/경기 기록은 건드리지 않는다.
+class StressHarness {
+    private static final String[] PANELS = { CrazyArcade_UI.PANEL_MENU, CrazyArcade_UI.PANEL_LOBBY,
+            CrazyArcade_UI.PANEL_GAME, CrazyArcade_UI.PANEL_GUIDE, CrazyArcade_UI.PANEL_CREDITS,
+            CrazyArcade_UI.PANEL_SETTINGS, CrazyArcade_UI.PANEL_SPLASH };
+    // 화면을 떠난 뒤에도 남아 있으면 안 되는 스레드
+    private static final String[] ROUND_THREADS = { "game-sim", "spectator-client" };
+
+    private static CrazyArcade_UI ui;
+    private static final java.util.List<String> leaks = new java.util.ArrayList<>();
+    private static final java.util.Random rnd = new java.util.Random(1);
+
+    public static void main(String[] args) throws Exception {
+        int cycles = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int gameSeconds = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+        if (GraphicsEnvironment.isHeadless()) {
+            System.err.println("디스플레이가 없습니다. 가상 프레임버퍼에서 실행하세요: xvfb-run -a java StressHarness");
+            System.exit(2);
+        }
+        GameSettings.load(); // 읽기만 한다 (저장 버튼은 누르지 않음)
+        Metrics.install();
+        BGMPlayer.resolveTracks();
+        AudioBank.preloadEffects();
+        int baselineLines = openAudioLines();
+        SwingUtilities.invokeAndWait(() -> ui = new CrazyArcade_UI());
+        Thread.sleep(3500); // 스플래시가 끝나고 메뉴로 넘어갈 때까지
+        long baseline = usedHeapAfterGc();
+        System.out.printf("시작 힙 %.1fMB%n", baseline / 1048576.0);
+
+        phase("화면 전환", baseline, () -> {
+            for (int k = 0; k < cycles; k++) {
+                show(PANELS[rnd.nextInt(PANELS.length)]);
+                Thread.sleep(5);
+            }
+            show(CrazyArcade_UI.PANEL_MENU);
+            Thread.sleep(3500); // 도중에 띄운 스플래시 타이머가 남아 있으면 이 사이에 드러난다
+        });
+
+        phase("키 설정", baseline, () -> {
+            show(CrazyArcade_UI.PANEL_SETTINGS);
+            SettingsPanel settings = find(ui.getContentPane(), SettingsPanel.class);
+            int[][] savedKeys = new int[1][];
+            SwingUtilities.invokeAndWait(() -> savedKeys[0] = keyBindings());
+            for (int k = 0; k < cycles; k++) {
+                JButton btn = settings.keyButtons.get(rnd.nextInt(settings.keyButtons.size()));
+                int presses = 1 + rnd.nextInt(2); // 가끔 두 번 누른다
+                boolean abandon = rnd.nextInt(4) == 0; // 가끔은 키를 누르지 않고 다른 버튼으로 간다
+                int key = KeyEvent.VK_A + rnd.nextInt(26);
+                SwingUtilities.invokeAndWait(() -> {
+                    for (int p = 0; p < presses; p++)
+                        btn.doClick(0);
+                    if (!abandon)
+                        sendKey(btn, KeyEvent.KEY_PRESSED, key);
+                });
+            }
+            show(CrazyArcade_UI.PANEL_MENU);
+            SwingUtilities.invokeAndWait(() -> {
+                int listeners = 0;
+                for (JButton btn : settings.keyButtons)
+                    listeners += btn.getKeyListeners().length;
+                if (listeners > 0)
+                    leaks.add("키 설정 버튼에 남은 KeyListener " + listeners + "개");
+                if (InputRouter.isCapturing())
+                    leaks.add("설정 화면을 떠난 뒤에도 키 입력 대기 중");
+            });
+            // 시험 전 키로 되돌린다 (settings.properties 가 없을 수도 있으므로 파일에 기대지 않는다)
+            SwingUtilities.invokeAndWait(() -> {
+                restoreKeyBindings(savedKeys[0]);
+                for (int i = 0; i < settings.keyButtons.size(); i++)
+                    settings.keyButtons.get(i).setText(KeyEvent.getKeyText(savedKeys[0][i]));
+            });
+        });
+
+        phase("채팅", baseline, () -> {
+            show(CrazyArcade_UI.PANEL_LOBBY);
+            LobbyPanel lobby = find(ui.getContentPane(), LobbyPanel.class);
+            JTextField input = find(lobby, JTextField.class);
+            for (int k = 0; k < cycles * 10; k++) {
+                String msg = "부하 시험 메시지 " + k;
+                SwingUtilities.invokeAndWait(() -> {
+                    input.setText(msg);
+                    input.postActionEvent();
+                });
+            }
+            JTextArea chat = find(lobby, JTextArea.class);
+            System.out.printf("  채팅 기록 %d자%n", chat.getDocument().getLength());
+        });
+
+        phase("게임", baseline, () -> {
+            int bots = GameSettings.botCount;
+            GameSettings.botCount = GameBoard.MAX_PLAYERS - 2;
+            GamePanelPlaceholder game = find(ui.getContentPane(), GamePanelPlaceholder.class);
+            int[] keys = { GameSettings.p1_Up, GameSettings.p1_Down, GameSettings.p1_Left, GameSettings.p1_Right,
+                    GameSettings.p1_Bomb, GameSettings.p1_Item, GameSettings.p2_Up, GameSettings.p2_Down,
+                    GameSettings.p2_Left, GameSettings.p2_Right, GameSettings.p2_Bomb, GameSettings.p2_Item };
+            int rounds = 0;
+            long end = System.nanoTime() + gameSeconds * 1_000_000_000L;
+            while (System.nanoTime() < end) {
+                if (!game.isShowing()) {
+                    show(CrazyArcade_UI.PANEL_GAME);
+                    rounds++;
+                }
+                int key = keys[rnd.nextInt(keys.length)];
+                int id = rnd.nextBoolean() ? KeyEvent.KEY_PRESSED : KeyEvent.KEY_RELEASED;
+                SwingUtilities.invokeAndWait(() -> sendKey(game, id, key));
+                Thread.sleep(8);
+            }
+            show(CrazyArcade_UI.PANEL_LOBBY);
+            GameSettings.botCount = bots;
+            System.out.printf("  라운드 %d판%n", rounds);
+        });
+
+        show(CrazyArcade_UI.PANEL_MENU);
+        Thread.sleep(500);
+        for (String name : ROUND_THREADS)
+            if (threadCount(name) > 0)
+                leaks.add("화면을 떠난 뒤에도 살아 있는 스레드: " + name + " x" + threadCount(name));
+        int lines = openAudioLines() - baselineLines;
+        if (lines > 1) // 믹서가 여는 출력 라인 하나는 정상
+            leaks.add("열린 채로 남은 오디오 라인 " + lines + "개");
+
+        System.out.println("== 프레임 시간 ==");
+        java.io.PrintWriter out = new java.io.PrintWriter(new java.io.OutputStreamWriter(System.out, "UTF-8"), true);
+        for (LatencyHistogram h : new LatencyHistogram[] { Metrics.FRAME, Metrics.RENDER, Metrics.EDT, Metrics.TICK }) {
+            out.printf("%s: %d개  평균 %.0fus  p50 %dus  p99 %dus  p99.9 %dus  최대 %dus%n", h.name, h.getCount(),
+                    h.getMeanMicros(), h.percentileMicros(50), h.percentileMicros(99), h.percentileMicros(99.9),
+                    h.getMaxMicros());
+        }
+        System.out.println("EDT 정체 " + EdtWatchdog.getStallCount() + "회");
+        Metrics.dump();
+
+        if (leaks.isEmpty()) {
+            System.out.println("누수 없음");
+            System.exit(0);
+        }
+        System.out.println("== 누수 ==");
+        for (String leak : leaks)
+            System.out.println("  " + leak);
+        System.exit(1);
+    }
+
+    interface Step {
+        void run() throws Exception;
+    }
+
+    private static void phase(String name, long baseline, Step step) throws Exception {
+        System.out.println("== " + name + " ==");
+        long start = System.nanoTime();
+        step.run();
+        Thread.sleep(300); // 화면 전환 뒤 늦게 도착하는 작업까지 끝나도록
+        long used = usedHeapAfterGc();
+        System.out.printf("  %.1f초, 힙 %.1fMB (시작 대비 %+.1fMB)%n", (System.nanoTime() - start) / 1e9,
+                used / 1048576.0, (used - baseline) / 1048576.0);
+        SwingUtilities.invokeAndWait(() -> findRunningTimers(ui.getContentPane(), name));
+    }
+
+    // 실제 키와 같은 길로 InputRouter 에 넣는다 (합성 입력이 포커스 이동에 좌우되지 않도록)
+    // SettingsPanel.keyButtons 와 같은 순서 (EDT 에서 호출)
+    private static int[] keyBindings() {
+        return new int[] { GameSettings.p1_Up, GameSettings.p1_Down, GameSettings.p1_Left, GameSettings.p1_Right,
+                GameSettings.p1_Bomb, GameSettings.p1_Item, GameSettings.p2_Up, GameSettings.p2_Down,
+                GameSettings.p2_Left, GameSettings.p2_Right, GameSettings.p2_Bomb, GameSettings.p2_Item };
+    }
+
+    private static void restoreKeyBindings(int[] keys) {
+        GameSettings.p1_Up = keys[0];
+        GameSettings.p1_Down = keys[1];
+        GameSettings.p1_Left = keys[2];
+        GameSettings.p1_Right = keys[3];
+        GameSettings.p1_Bomb = keys[4];
+        GameSettings.p1_Item = keys[5];
+        GameSettings.p2_Up = keys[6];
+        GameSettings.p2_Down = keys[7];
+        GameSettings.p2_Left = keys[8];
+        GameSettings.p2_Right = keys[9];
+        GameSettings.p2_Bomb = keys[10];
+        GameSettings.p2_Item = keys[11];
+    }
+
+    private static void sendKey(Component source, int id, int keyCode) {
+        InputRouter.dispatch(new KeyEvent(source, id, System.currentTimeMillis(), 0, keyCode, KeyEvent.CHAR_UNDEFINED));
+    }
+
+    private static void show(String panel) throws Exception {
+        SwingUtilities.invokeAndWait(() -> ui.showPanel(panel));
+    }
+
+    // 보이지 않는 화면이 가진 javax.swing.Timer 가 돌고 있으면 누수로 본다
+    private static void findRunningTimers(Component c, String phase) {
+        for (Class<?> cls = c.getClass(); cls != null && cls != JComponent.class; cls = cls.getSuperclass()) {
+            for (java.lang.reflect.Field f : cls.getDeclaredFields()) {
+                if (f.getType() != Timer.class || java.lang.reflect.Modifier.isStatic(f.getModifiers()))
+                    continue;
+                try {
+                    f.setAccessible(true);
+                    Timer t = (Timer) f.get(c);
+                    if (t != null && t.isRunning() && !c.isShowing())
+                        leaks.add(phase + " 후 숨은 화면에서 도는 타이머: " + cls.getName() + "." + f.getName());
+                } catch (ReflectiveOperationException | RuntimeException e) {
+                    System.err.println("타이머 확인 실패: " + cls.getName() + "." + f.getName());
+                }
+            }
+        }
+        if (c instanceof Container)
+            for (Component child : ((Container) c).getComponents())
+                findRunningTimers(child, phase);
+    }
+
+    private static <T> T find(Component c, Class<T> type) {
+        if (type.isInstance(c))
+            return type.cast(c);
+        if (c instanceof Container) {
+            for (Component child : ((Container) c).getComponents()) {
+                T found = find(child, type);
+                if (found != null)
+                    return found;
+            }
+        }
+        return null;
+    }
+
+    private static long usedHeapAfterGc() {
+        java.lang.management.MemoryMXBean memory = java.lang.management.ManagementFactory.getMemoryMXBean();
+        for (int k = 0; k < 3; k++)
+            memory.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static int threadCount(String name) {
+        int n = 0;
+        for (Thread t : Thread.getAllStackTraces().keySet())
+            if (t.isAlive() && t.getName().equals(name))
+                n++;
+        return n;
+    }
+
+    // 모든 오디오 믹서에 열려 있는 재생 라인 (Clip 포함) 수
+    private static int openAudioLines() {
+        int n = 0;
+        for (javax.sound.sampled.Mixer.Info info : AudioSystem.getMixerInfo()) {
+            try {
+                n += AudioSystem.getMixer(info).getSourceLines().length;
+            } catch (RuntimeException e) {
+                // 열 수 없는 장치는 건너뛴다
+            }
+        }
+        return n;
+    }
+}
+
+// ========================================================
+// [핵심] I/O 서비스 - 파일/네트워크처럼 막히는 작업은 전부 여기서 (EDT 에서 직접 하지 않는다)
+// ========================================================
+// Java 21 이상이면 작업마다 가상 스레드를 쓰고, 아니면 데몬 스레드 풀로 대신한다.
+// (소스는 JDK 17 로도 컴파일되도록 가상 스레드 API 는 리플렉션으로 찾는다)
+class IoService {
+    private static final java.util.concurrent.atomic.AtomicInteger threadIds = new java.util.concurrent.atomic.AtomicInteger();
+    private static boolean virtual;
+    private static final java.util.concurrent.ExecutorService EXECUTOR = createExecutor();
+
+    private static java.util.concurrent.ExecutorService createExecutor() {
+        try {
+            java.lang.reflect.Method factory = java.util.concurrent.Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor");
+            java.util.concurrent.ExecutorService executor = (java.util.concurrent.ExecutorService) factory.invoke(null);
+            virtual = true;
+            return executor;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // JDK 17~20 (또는 미리보기 기능 꺼짐): 일반 스레드 풀
+            return java.util.concurrent.Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "io-" + threadIds.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    public static boolean isVirtual() {
+        return virtual;
+    }
+
+    public static java.util.concurrent.Executor executor() {
+        return EXECUTOR;
+    }
+
+    // 작업을 I/O 스레드에서 실행. 실패하면 future 가 예외로 끝난다
+    public static <T> java.util.concurrent.CompletableFuture<T> submit(java.util.concurrent.Callable<T> task) {
+        java.util.concurrent.CompletableFuture<T> result = new java.util.concurrent.CompletableFuture<>();
+        EXECUTOR.execute(() -> {
+            try {
+                result.complete(task.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        return result;
+    }
+
+    // 화면 하나에 필요한 것들을 한 묶음으로 읽는다 (EDT 에서 호출)
+    public static ScreenLoad openScope(String screen) {
+        return new ScreenLoad(screen);
+    }
+}
+
+// 한 화면의 로딩 범위. fork 한 작업이 모두 끝나면 결과를 한 번의 invokeLater 로 EDT 에 전달한다.
+// 결과가 오기 전에 화면을 떠나면 cancel() 로 남은 작업을 중단하고 결과는 버린다.
+class ScreenLoad {
+    private final String screen;
+    private final java.util.List<java.util.concurrent.Future<?>> tasks = new java.util.ArrayList<>();
+    private final java.util.List<Runnable> deliveries = java.util.Collections
+            .synchronizedList(new java.util.ArrayList<>());
+    // fork 된 작업 수 + 1 (seal 전까지 열려 있다는 표시)
+    private final java.util.concurrent.atomic.AtomicInteger pending = new java.util.concurrent.atomic.AtomicInteger(1);
+    private volatile boolean cancelled;
+
+    ScreenLoad(String screen) {
+        this.screen = screen;
+    }
+
+    public String getScreen() {
+        return screen;
+    }
+
+    // task 는 I/O 스레드에서, onEdt 는 묶음 전달 때 EDT 에서 실행된다 (null 결과도 그대로 전달)
+    public <T> void fork(java.util.concurrent.Callable<T> task, java.util.function.Consumer<? super T> onEdt) {
+        if (cancelled)
+            return;
+        pending.incrementAndGet();
+        java.util.concurrent.FutureTask<Void> future = new java.util.concurrent.FutureTask<>(() -> {
+            try {
+                T value = task.call();
+                if (!cancelled)
+                    deliveries.add(() -> onEdt.accept(value));
+            } catch (InterruptedException | java.nio.channels.ClosedByInterruptException e) {
+                // 취소됨
+            } catch (Exception e) {
+                if (!cancelled)
+                    System.err.println("[" + screen + "] 로딩 실패: " + e);
+            } finally {
+                finishOne();
+            }
+            return null;
+        });
+        tasks.add(future);
+        IoService.executor().execute(future);
+    }
+
+    // 화면에 들어올 때의 묶음이 끝났다는 표시. 모든 작업이 끝나는 대로 한 번에 전달된다
+    // (이후에 fork 한 작업은 끝나는 대로 따로 전달된다)
+    public void seal() {
+        finishOne();
+    }
+
+    public void cancel() {
+        cancelled = true;
+        for (java.util.concurrent.Future<?> f : tasks)
+            f.cancel(true);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private void finishOne() {
+        if (pending.decrementAndGet() != 0 || cancelled)
+            return;
+        Runnable[] batch;
+        synchronized (deliveries) {
+            batch = deliveries.toArray(new Runnable[0]);
+            deliveries.clear();
+        }
+        if (batch.length == 0)
+            return;
+        SwingUtilities.invokeLater(() -> {
+            if (cancelled)
+                return;
+            for (Runnable r : batch)
+                r.run();
+        });
+    }
+}
+
+// 화면에 들어올 때 필요한 자원을 ScreenLoad 에 등록하는 패널
+interface ScreenAssets {
+    void loadAssets(ScreenLoad scope);
+}
+
+// ========================================================
+// [핵심] 자원 묶음 파일 (.pak) - 이름 해시 색인 + 메모리 매핑으로 O(1) 조회
+// ========================================================
+// 구조 (빅엔디언):
+//   헤더 32바이트: 'WBPK' / 버전(short) / 예약(short) / 슬롯 수(int, 2의 거듭제곱) / 항목 수(int)
+//                  / 색인 오프셋(int) / 이름 영역 오프셋(int) / 데이터 오프셋(int) / 예약(int)
+//   색인: 슬롯 24바이트 = 이름 해시(long, 0 = 빈 칸) / 데이터 오프셋(int) / 길이(int) / 이름 오프셋(int) / 이름 길이(int)
+//   이름 영역 (UTF-8) -> 데이터 영역
+// 조회는 해시로 슬롯을 고르고 빈 칸이 나올 때까지 선형 탐사, 이름까지 비교해서 충돌을 걸러낸다.
+class AssetArchive {
+    public static final int MAGIC = 0x5742504B; // "WBPK"
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    private static final int SLOT_SIZE = 24;
+
+    private final java.nio.ByteBuffer buf;
+    private final int slotMask;
+    private final int entryCount;
+    private final int tableOffset;
+
+    // 헤더와 색인의 모든 오프셋/길이를 여기서 한 번 확인하므로, find 는 범위 검사 없이 읽는다
+    private AssetArchive(String fileName, java.nio.ByteBuffer buf) {
+        this.buf = buf;
+        if (buf.capacity() < HEADER_SIZE || buf.getInt(0) != MAGIC)
+            throw new IllegalArgumentException("자원 묶음 파일이 아닙니다: " + fileName);
+        if (buf.getShort(4) != VERSION)
+            throw new IllegalArgumentException("지원하지 않는 자원 묶음 버전: " + buf.getShort(4));
+        int slots = buf.getInt(8);
+        if (slots <= 0 || Integer.bitCount(slots) != 1)
+            throw new IllegalArgumentException("색인 크기가 잘못되었습니다: " + slots);
+        slotMask = slots - 1;
+        entryCount = buf.getInt(12);
+        tableOffset = buf.getInt(16);
+        if (!inBounds(tableOffset, (long) slots * SLOT_SIZE) || tableOffset < HEADER_SIZE)
+            throw new IllegalArgumentException("색인이 파일 밖을 가리킵니다 (잘린 파일?): " + fileName);
+        int used = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            int at = tableOffset + slot * SLOT_SIZE;
+            if (buf.getLong(at) == 0)
+                continue;
+            used++;
+            if (!inBounds(buf.getInt(at + 8), buf.getInt(at + 12))
+                    || !inBounds(buf.getInt(at + 16), buf.getInt(at + 20)))
+                throw new IllegalArgumentException("자원 위치가 파일 밖을 가리킵니다 (잘린 파일?): " + fileName);
+        }
+        if (used != entryCount || used == slots)
+            throw new IllegalArgumentException("색인 항목 수가 맞지 않습니다: " + used + "/" + entryCount);
+    }
+
+    private boolean inBounds(int offset, long length) {
+        return offset >= 0 && length >= 0 && offset + length <= buf.capacity();
+    }
+
+    public static AssetArchive open(java.nio.file.Path path) throws java.io.IOException {
+        try (java.nio.channels.FileChannel ch = java.nio.channels.FileChannel.open(path,
+                java.nio.file.StandardOpenOption.READ)) {
+            java.nio.MappedByteBuffer buf = ch.map(java.nio.channels.FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            return new AssetArchive(path.getFileName().toString(), buf);
+        }
+    }
+
+    public int size() {
+        return entryCount;
+    }
+
+    // 자원 내용을 가리키는 읽기 전용 뷰 (복사 없음). 없으면 null
+    public java.nio.ByteBuffer find(String name) {
+        byte[] key = normalize(name).getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        long hash = hash(key);
+        // 빈 칸이 적어도 하나 있음은 생성자에서 확인했지만, 한 바퀴를 넘겨 돌지는 않는다
+        for (int probe = 0, slot = (int) hash & slotMask; probe <= slotMask; probe++, slot = (slot + 1) & slotMask) {
+            int at = tableOffset + slot * SLOT_SIZE;
+            long slotHash = buf.getLong(at);
+            if (slotHash == 0)
+                return null;
+            if (slotHash == hash && nameEquals(buf.getInt(at + 16), buf.getInt(at + 20), key)) {
+                int offset = buf.getInt(at + 8), length = buf.getInt(at + 12);
+                return buf.duplicate().position(offset).limit(offset + length).slice().asReadOnlyBuffer();
+            }
+        }
+        return null;
+    }
+
+    private boolean nameEquals(int offset, int length, byte[] key) {
+        if (length != key.length)
+            return false;
+        for (int k = 0; k < length; k++)
+            if (buf.get(offset + k) != key[k])
+                return false;
+        return true;
+    }
+
+    // 경로 구분자 / 앞쪽의 "/" 와 "res/" / 한글 자모 분리(NFD) 차이를 없앤 이름
+    static String normalize(String name) {
+        String n = name.replace('\\', '/');
+        while (n.startsWith("/"))
+            n = n.substring(1);
+        if (n.startsWith("res/"))
+            n = n.substring(4);
+        return java.text.Normalizer.normalize(n, java.text.Normalizer.Form.NFC);
+    }
+
+    // FNV-1a 64비트 (0 은 빈 칸 표시이므로 피한다)
+    static long hash(byte[] key) {
+        long h = 0xCBF29CE484222325L;
+        for (byte b : key) {
+            h ^= b & 0xFF;
+            h *= 0x100000001B3L;
+        }
+        return h == 0 ? 1 : h;
+    }
+
+    // 이름 -> 내용 으로 묶음 파일을 쓴다 (색인 부하율 50% 이하)
+    public static void write(java.nio.file.Path path, java.util.Map<String, byte[]> entries)
+            throws java.io.IOException {
+        int count = entries.size();
+        int slots = Integer.highestOneBit(Math.max(2, count * 2 - 1)) << 1;
+        String[] names = new String[count];
+        byte[][] nameBytes = new byte[count][];
+        byte[][] data = new byte[count][];
+        int k = 0;
+        int namesSize = 0;
+        long dataSize = 0;
+        for (java.util.Map.Entry<String, byte[]> entry : new java.util.TreeMap<>(entries).entrySet()) {
+            names[k] = normalize(entry.getKey());
+            nameBytes[k] = names[k].getBytes(java.nio.charset.StandardCharsets.UTF_8);
+            data[k] = entry.getValue();
+            namesSize += nameBytes[k].length;
+            dataSize += data[k].length;
+            k++;
+        }
+        int tableOffset = HEADER_SIZE;
+        int namesOffset = tableOffset + slots * SLOT_SIZE;
+        int dataOffset = namesOffset + namesSize;
+        if (dataOffset + dataSize > Integer.MAX_VALUE)
+            throw new java.io.IOException("자원 묶음이 2GB 를 넘습니다");
+
+        java.nio.ByteBuffer header = java.nio.ByteBuffer.allocate(dataOffset);
+        header.putInt(MAGIC).putShort(VERSION).putShort((short) 0);
+        header.putInt(slots).putInt(count).putInt(tableOffset).putInt(namesOffset).putInt(dataOffset).putInt(0);
+        int nameAt = namesOffset, dataAt = dataOffset;
+        for (k = 0; k < count; k++) {
+            long hash = hash(nameBytes[k]);
+            int slot = (int) hash & (slots - 1);
+            while (header.getLong(tableOffset + slot * SLOT_SIZE) != 0) {
+                int other = header.getInt(tableOffset + slot * SLOT_SIZE + 16);
+                if (header.getLong(tableOffset + slot * SLOT_SIZE) == hash && java.util.Arrays.equals(nameBytes[k],
+                        0, nameBytes[k].length, header.array(), other, other + nameBytes[k].length))
+                    throw new IllegalArgumentException("같은 이름의 자원이 두 번 들어 있습니다: " + names[k]);
+                slot = (slot + 1) & (slots - 1);
+            }
+            int at = tableOffset + slot * SLOT_SIZE;
+            header.putLong(at, hash).putInt(at + 8, dataAt).putInt(at + 12, data[k].length);
+            header.putInt(at + 16, nameAt).putInt(at + 20, nameBytes[k].length);
+            header.put(nameAt, nameBytes[k]);
+            nameAt += nameBytes[k].length;
+            dataAt += data[k].length;
+        }
+        try (java.nio.channels.FileChannel ch = java.nio.channels.FileChannel.open(path,
+                java.nio.file.StandardOpenOption.CREATE, java.nio.file.StandardOpenOption.WRITE,
+                java.nio.file.StandardOpenOption.TRUNCATE_EXISTING)) {
+            header.clear();
+            while (header.hasRemaining())
+                ch.write(header);
+            for (byte[] d : data) {
+                java.nio.ByteBuffer b = java.nio.ByteBuffer.wrap(d);
+                while (b.hasRemaining())
+                    ch.write(b);
+            }
+        }
+    }
+
+    // 낱개 파일을 그대로 묶는다: java AssetArchive <출력.pak> <파일 또는 폴더>...
+    public static void main(String[] args) throws java.io.IOException {
+        if (args.length < 2) {
+            System.err.println("사용법: java AssetArchive <출력.pak> <파일 또는 폴더>...");
+            return;
+        }
+        java.util.Map<String, byte[]> entries = new java.util.HashMap<>();
+        for (int a = 1; a < args.length; a++) {
+            java.nio.file.Path root = java.nio.file.Paths.get(args[a]);
+            try (java.util.stream.Stream<java.nio.file.Path> files = java.nio.file.Files.walk(root)) {
+                for (java.nio.file.Path file : (Iterable<java.nio.file.Path>) files
+                        .filter(java.nio.file.Files::isRegularFile)::iterator) {
+                    java.nio.file.Path rel = java.nio.file.Files.isDirectory(root) ? root.relativize(file)
+                            : file.getFileName();
+                    entries.put(rel.toString(), java.nio.file.Files.readAllBytes(file));
+                }
+            }
+        }
+        write(java.nio.file.Paths.get(args[0]), entries);
+        System.out.println(args[0] + ": " + entries.size() + "개 자원");
+    }
+}
+
+// ========================================================
+// [핵심] 자원 빌드 파이프라인 (오프라인) - 원본 PNG/WAV 를 실행 시 그대로 쓸 수 있는 형태로 만들어 .pak 에 담는다
+// ========================================================
+// java AssetPipeline [원본 폴더] [출력.pak] [샘플레이트]
+//  - 이미지: UI 가 실제로 그리는 크기로 줄이고 (논리 해상도 800x600 기준), 미리 곱한 알파(ARGB_PRE) 픽셀로 저장
+//  - 작은 이미지(캐릭터 카드 등)는 한 장의 아틀라스로 묶는다
+//  - 오디오: 믹서 출력 포맷(16비트 스테레오)으로 미리 변환해서 실행 시 리샘플링이 필요 없게 한다
+// 자원마다 독립적이므로 코어 수만큼 병렬로 처리한다.
+class AssetPipeline {
+    static final int FIT = 0; // 비율 유지, 안에 맞춤 (GuidePanel)
+    static final int STRETCH = 1; // 꽉 채움 (배경)
+    static final int ATLAS = 2; // 정해진 크기로 늘려서 아틀라스에 넣음
+
+    private static final int ATLAS_SIZE = 512;
+    private static final int ATLAS_PADDING = 1;
+
+    static final class ImageSpec {
+        final String name;
+        final int width, height, mode;
+
+        ImageSpec(String name, int width, int height, int mode) {
+            this.name = name;
+            this.width = width;
+            this.height = height;
+            this.mode = mode;
+        }
+    }
+
+    // 화면에서 그리는 크기 (각 패널의 paintComponent 와 맞춰야 한다)
+    static final ImageSpec[] IMAGE_SPECS = {
+            new ImageSpec("배찌.png", 100, 100, ATLAS), // LobbyPanel 캐릭터 카드
+            new ImageSpec("다오.png", 100, 100, ATLAS),
+            new ImageSpec("game play.png", 800, 600, FIT), // GuidePanel
+            new ImageSpec("start.png", 800, 600, STRETCH), // MenuPanel
+            new ImageSpec("creditss.png", 800, 600, STRETCH), // CreditsPanel
+            new ImageSpec("splash.png", 800, 600, STRETCH) }; // SplashPanel
+
+    private static final class Sprite {
+        final String name;
+        final java.awt.image.BufferedImage image;
+        int sheet, x, y;
+
+        Sprite(String name, java.awt.image.BufferedImage image) {
+            this.name = name;
+            this.image = image;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        java.nio.file.Path srcDir = java.nio.file.Paths.get(args.length > 0 ? args[0] : ".");
+        java.nio.file.Path out = java.nio.file.Paths.get(args.length > 1 ? args[1] : Assets.ARCHIVE_NAME);
+        float rate = args.length > 2 ? Float.parseFloat(args[2]) : 48000f;
+        AudioFormat audioFormat = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, rate, 16, 2, 4, rate, false);
+
+        java.util.List<java.nio.file.Path> sources = new java.util.ArrayList<>();
+        try (java.nio.file.DirectoryStream<java.nio.file.Path> dir = java.nio.file.Files.newDirectoryStream(srcDir)) {
+            for (java.nio.file.Path p : dir) {
+                String n = p.getFileName().toString().toLowerCase(java.util.Locale.ROOT);
+                if (java.nio.file.Files.isRegularFile(p) && (n.endsWith(".png") || n.endsWith(".wav")))
+                    sources.add(p);
+            }
+        }
+
+        long start = System.nanoTime();
+        java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool(
+                Runtime.getRuntime().availableProcessors());
+        java.util.Map<String, byte[]> entries = new java.util.concurrent.ConcurrentHashMap<>();
+        java.util.List<Sprite> sprites = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+        java.util.List<java.util.concurrent.CompletableFuture<Void>> jobs = new java.util.ArrayList<>();
+        for (java.nio.file.Path source : sources) {
+            jobs.add(java.util.concurrent.CompletableFuture.runAsync(() -> {
+                try {
+                    process(source, audioFormat, entries, sprites);
+                } catch (Exception e) {
+                    throw new java.util.concurrent.CompletionException(source + ": " + e.getMessage(), e);
+                }
+            }, pool));
+        }
+        try {
+            java.util.concurrent.CompletableFuture.allOf(jobs.toArray(new java.util.concurrent.CompletableFuture<?>[0]))
+                    .join();
+        } finally {
+            pool.shutdown();
+        }
+        packAtlases(sprites, entries);
+        AssetArchive.write(out, entries);
+        System.out.printf("%s: 원본 %d개 -> 자원 %d개 (%.0fms, %d 스레드)%n", out, sources.size(), entries.size(),
+                (System.nanoTime() - start) / 1e6, pool.getParallelism());
+    }
+
+    private static void process(java.nio.file.Path source, AudioFormat audioFormat, java.util.Map<String, byte[]> entries,
+            java.util.List<Sprite> sprites) throws Exception {
+        String name = AssetArchive.normalize(source.getFileName().toString());
+        if (name.toLowerCase(java.util.Locale.ROOT).endsWith(".wav")) {
+            entries.put(name, convertAudio(source, audioFormat));
+            return;
+        }
+        java.awt.image.BufferedImage src = javax.imageio.ImageIO.read(source.toFile());
+        if (src == null)
+            throw new java.io.IOException("이미지를 읽을 수 없습니다");
+        ImageSpec spec = specFor(name);
+        if (spec == null) {
+            entries.put(name, PackedImage.encode(resize(src, src.getWidth(), src.getHeight())));
+            return;
+        }
+        int w = spec.width, h = spec.height;
+        if (spec.mode == FIT) {
+            double scale = Math.min((double) w / src.getWidth(), (double) h / src.getHeight());
+            w = (int) (src.getWidth() * scale);
+            h = (int) (src.getHeight() * scale);
+        }
+        java.awt.image.BufferedImage img = resize(src, w, h);
+        if (spec.mode == ATLAS)
+            sprites.add(new Sprite(name, img));
+        else
+            entries.put(name, PackedImage.encode(img));
+    }
+
+    private static ImageSpec specFor(String name) {
+        for (ImageSpec spec : IMAGE_SPECS)
+            if (spec.name.equals(name))
+                return spec;
+        return null;
+    }
+
+    // 한 번에 크게 줄이면 계단이 생기므로 절반씩 줄인 뒤 마지막에 정확한 크기로 맞춘다
+    static java.awt.image.BufferedImage resize(java.awt.image.BufferedImage src, int width, int height) {
+        java.awt.image.BufferedImage cur = src;
+        int w = src.getWidth(), h = src.getHeight();
+        do {
+            w = Math.max(width, w / 2 >= width ? w / 2 : width);
+            h = Math.max(height, h / 2 >= height ? h / 2 : height);
+            java.awt.image.BufferedImage next = new java.awt.image.BufferedImage(w, h,
+                    java.awt.image.BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g2 = next.createGraphics();
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g2.setComposite(AlphaComposite.Src);
+            g2.drawImage(cur, 0, 0, w, h, null);
+            g2.dispose();
+            cur = next;
+        } while (w != width || h != height);
+        return cur;
+    }
+
+    // 높이순으로 정렬한 뒤 선반(shelf) 방식으로 채운다. 넘치면 다음 장
+    private static void packAtlases(java.util.List<Sprite> sprites, java.util.Map<String, byte[]> entries)
+            throws java.io.IOException {
+        if (sprites.isEmpty())
+            return;
+        sprites.sort((a, b) -> b.image.getHeight() != a.image.getHeight() ? b.image.getHeight() - a.image.getHeight()
+                : a.name.compareTo(b.name));
+        int sheet = 0, x = 0, y = 0, shelf = 0;
+        for (Sprite s : sprites) {
+            int w = s.image.getWidth() + ATLAS_PADDING, h = s.image.getHeight() + ATLAS_PADDING;
+            if (w > ATLAS_SIZE || h > ATLAS_SIZE)
+                throw new java.io.IOException("아틀라스에 들어가지 않는 이미지: " + s.name);
+            if (x + w > ATLAS_SIZE) {
+                x = 0;
+                y += shelf;
+                shelf = 0;
+            }
+            if (y + h > ATLAS_SIZE) {
+                sheet++;
+                x = y = shelf = 0;
+            }
+            s.sheet = sheet;
+            s.x = x;
+            s.y = y;
+            x += w;
+            shelf = Math.max(shelf, h);
+        }
+        StringBuilder index = new StringBuilder();
+        for (int k = 0; k <= sheet; k++) {
+            // 실제로 쓴 영역만큼만 (마지막 장은 작을 수 있다)
+            int usedW = 0, usedH = 0;
+            for (Sprite s : sprites) {
+                if (s.sheet == k) {
+                    usedW = Math.max(usedW, s.x + s.image.getWidth());
+                    usedH = Math.max(usedH, s.y + s.image.getHeight());
+                }
+            }
+            java.awt.image.BufferedImage atlas = new java.awt.image.BufferedImage(usedW, usedH,
+                    java.awt.image.BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g2 = atlas.createGraphics();
+            g2.setComposite(AlphaComposite.Src);
+            for (Sprite s : sprites) {
+                if (s.sheet == k) {
+                    g2.drawImage(s.image, s.x, s.y, null);
+                    index.append(s.name).append('\t').append(PackedImage.atlasName(k)).append('\t').append(s.x)
+                            .append('\t').append(s.y).append('\t').append(s.image.getWidth()).append('\t')
+                            .append(s.image.getHeight()).append('\n');
+                }
+            }
+            g2.dispose();
+            entries.put(PackedImage.atlasName(k), PackedImage.encode(atlas));
+        }
+        entries.put(PackedImage.ATLAS_INDEX, index.toString().getBytes(java.nio.charset.StandardCharsets.UTF_8));
+    }
+
+    // 믹서 포맷의 WAV 로 변환 (AudioBank.decode 와 같은 리샘플러)
+    private static byte[] convertAudio(java.nio.file.Path source, AudioFormat target) throws Exception {
+        java.nio.ShortBuffer pcm;
+        try (AudioInputStream src = AudioSystem.getAudioInputStream(source.toFile())) {
+            pcm = AudioBank.decode(src, target);
+        }
+        java.nio.ByteBuffer bytes = java.nio.ByteBuffer.allocate(pcm.remaining() * 2)
+                .order(java.nio.ByteOrder.LITTLE_ENDIAN);
+        bytes.asShortBuffer().put(pcm);
+        AudioInputStream converted = new AudioInputStream(new java.io.ByteArrayInputStream(bytes.array()), target,
+                bytes.capacity() / target.getFrameSize());
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream(bytes.capacity() + 64);
+        AudioSystem.write(converted, javax.sound.sampled.AudioFileFormat.Type.WAVE, out);
+        return out.toByteArray();
+    }
+}
+
+// ========================================================
+// [핵심] 미리 변환된 이미지 - ARGB_PRE 픽셀을 그대로 담은 형식 (디코딩 없이 배열 복사만)
+// ========================================================
+// 구조: 'WBIM' / 너비(int) / 높이(int) / 픽셀(int, 빅엔디언, 미리 곱한 알파)
+// 아틀라스: "atlas/sheet-N.img" 이미지 + "atlas/index" (이름 / 장 / x / y / w / h, 탭 구분)
+class PackedImage {
+    public static final int MAGIC = 0x5742494D; // "WBIM"
+    public static final String ATLAS_INDEX = "atlas/index";
+
+    static String atlasName(int sheet) {
+        return "atlas/sheet-" + sheet + ".img";
+    }
+
+    // 래스터 배열을 직접 꺼내지 않고 복사해서 읽는다 (getData() 를 부르면 Java2D 가속이 영구히 꺼진다)
+    static byte[] encode(java.awt.image.BufferedImage img) {
+        int w = img.getWidth(), h = img.getHeight();
+        if (img.getType() != java.awt.image.BufferedImage.TYPE_INT_ARGB_PRE) {
+            java.awt.image.BufferedImage pre = new java.awt.image.BufferedImage(w, h,
+                    java.awt.image.BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g = pre.createGraphics();
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(img, 0, 0, null);
+            g.dispose();
+            img = pre;
+        }
+        int[] pixels = (int[]) img.getRaster().getDataElements(0, 0, w, h, null);
+        java.nio.ByteBuffer buf = java.nio.ByteBuffer.allocate(12 + pixels.length * 4);
+        buf.putInt(MAGIC).putInt(w).putInt(h);
+        buf.asIntBuffer().put(pixels);
+        return buf.array();
+    }
+
+    static boolean isPacked(java.nio.ByteBuffer data) {
+        return data.remaining() >= 12 && data.getInt(data.position()) == MAGIC;
+    }
+
+    // 크기가 남은 바이트와 맞지 않으면 (잘린 파일) null
+    static java.awt.image.BufferedImage decode(java.nio.ByteBuffer data) {
+        java.nio.ByteBuffer buf = data.duplicate();
+        buf.getInt();
+        int w = buf.getInt(), h = buf.getInt();
+        if (w <= 0 || h <= 0 || (long) w * h * 4 > buf.remaining()) {
+            System.err.println("변환된 이미지 크기가 잘못되었습니다: " + w + "x" + h);
+            return null;
+        }
+        int[] pixels = new int[w * h];
+        buf.asIntBuffer().get(pixels);
+        java.awt.image.BufferedImage img = new java.awt.image.BufferedImage(w, h,
+                java.awt.image.BufferedImage.TYPE_INT_ARGB_PRE);
+        img.getRaster().setDataElements(0, 0, w, h, pixels); // 래스터를 훔치지 않아 가속 가능한 상태로 남는다
+        return img;
+    }
+
+    // 아틀라스 색인과 시트 (처음 찾을 때 한 번 읽는다)
+    private static class Atlas {
+        static final java.util.Map<String, String[]> INDEX = readIndex();
+        static final java.util.concurrent.ConcurrentHashMap<String, java.awt.image.BufferedImage> SHEETS = new java.util.concurrent.ConcurrentHashMap<>();
+
+        private static java.util.Map<String, String[]> readIndex() {
+            java.util.Map<String, String[]> index = new java.util.HashMap<>();
+            java.nio.ByteBuffer data = Assets.find(ATLAS_INDEX);
+            if (data == null)
+                return index;
+            byte[] bytes = new byte[data.remaining()];
+            data.duplicate().get(bytes);
+            for (String line : new String(bytes, java.nio.charset.StandardCharsets.UTF_8).split("\n")) {
+                String[] cols = line.split("\t");
+                if (cols.length == 6)
+                    index.put(cols[0], cols);
+            }
+            return index;
+        }
+    }
+
+    // 묶음 파일에 미리 변환된 형태로 들어 있으면 그것을 쓰고, 아니면 null
+    static java.awt.image.BufferedImage load(String name) {
+        if (!Assets.hasArchive())
+            return null;
+        String key = AssetArchive.normalize(name);
+        String[] region = Atlas.INDEX.get(key);
+        if (region != null) {
+            java.awt.image.BufferedImage sheet = Atlas.SHEETS.computeIfAbsent(region[1], s -> {
+                java.nio.ByteBuffer data = Assets.find(s);
+                return data != null && isPacked(data) ? decode(data) : null;
+            });
+            if (sheet != null) // 시트와 래스터를 공유하는 부분 이미지
+                return sheet.getSubimage(Integer.parseInt(region[2]), Integer.parseInt(region[3]),
+                        Integer.parseInt(region[4]), Integer.parseInt(region[5]));
+        }
+        java.nio.ByteBuffer data = Assets.find(key);
+        return data != null && isPacked(data) ? decode(data) : null;
+    }
+}
+
+// ========================================================
+// [핵심] 자원 찾기 - 묶음 파일이 있으면 거기서, 없으면 낱개 파일에서 (경로 규칙은 여기 한 곳)
+// ========================================================
+class Assets {
+    public static final String ARCHIVE_NAME = "waterbomb.pak";
+
+    // 작업 폴더의 waterbomb.pak 을 처음 쓸 때 한 번 연다 (없으면 null)
+    private static class Holder {
+        static final AssetArchive ARCHIVE = openArchive();
+    }
+
+    private static AssetArchive openArchive() {
+        java.nio.file.Path path = java.nio.file.Paths.get(System.getProperty("user.dir"), ARCHIVE_NAME);
+        if (!java.nio.file.Files.isRegularFile(path))
+            return null;
+        try {
+            AssetArchive archive = AssetArchive.open(path);
+            System.out.println(ARCHIVE_NAME + ": 자원 " + archive.size() + "개");
+            return archive;
+        } catch (Exception e) {
+            System.err.println(ARCHIVE_NAME + " 을 열 수 없습니다. 낱개 파일을 씁니다: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public static boolean hasArchive() {
+        return Holder.ARCHIVE != null;
+    }
+
+    // 묶음 파일 안의 자원 내용 (낱개 파일은 찾지 않는다). 없으면 null
+    public static java.nio.ByteBuffer find(String name) {
+        return Holder.ARCHIVE != null ? Holder.ARCHIVE.find(name) : null;
+    }
+
+    public static boolean exists(String name) {
+        if (Holder.ARCHIVE != null && Holder.ARCHIVE.find(name) != null)
+            return true;
+        return findLoose(name) != null;
+    }
+
+    // 자원 내용을 읽는 스트림. 찾지 못하면 FileNotFoundException
+    public static java.io.InputStream open(String name) throws java.io.IOException {
+        if (Holder.ARCHIVE != null) {
+            java.nio.ByteBuffer data = Holder.ARCHIVE.find(name);
+            if (data != null)
+                return new ByteBufferInputStream(data);
+        }
+        URL url = findLoose(name);
+        if (url == null)
+            throw new java.io.FileNotFoundException("자원을 찾을 수 없습니다: " + name);
+        return url.openStream();
+    }
+
+    // 묶음 파일이 없을 때: 작업 폴더 -> 작업 폴더/res -> 클래스패스 /res -> 클래스패스 루트
+    private static URL findLoose(String name) {
+        String n = AssetArchive.normalize(name);
+        String dir = System.getProperty("user.dir");
+        for (File file : new File[] { new File(dir, n), new File(new File(dir, "res"), n) }) {
+            if (file.isFile()) {
+                try {
+                    return file.toURI().toURL();
+                } catch (java.net.MalformedURLException e) {
+                    // 파일 경로이므로 일어나지 않음
+                }
+            }
+        }
+        URL url = Assets.class.getResource("/res/" + n);
+        return url != null ? url : Assets.class.getResource("/" + n);
+    }
+
+    private static final class ByteBufferInputStream extends java.io.InputStream {
+        private final java.nio.ByteBuffer buf;
+
+        ByteBufferInputStream(java.nio.ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public int read() {
+            return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buf.hasRemaining())
+                return -1;
+            int n = Math.min(len, buf.remaining());
+            buf.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buf.remaining();
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit) {
+            buf.mark();
+        }
+
+        @Override
+        public synchronized void reset() {
+            buf.reset();
+        }
+    }
+}
+
+// ========================================================
+// [핵심] 이미지 로더 - 모든 이미지 로드를 한 곳에서 (JFR 이벤트 기록)
+// ========================================================
+class AssetLoader {
+    // 이름으로 이미지를 읽는다 (I/O 스레드에서 호출). 없거나 깨졌으면 오류를 남기고 null
+    public static Image loadImage(String name) {
+        AssetLoadEvent event = new AssetLoadEvent();
+        event.begin();
+        // AssetPipeline 이 만든 .pak 이면 이미 그릴 크기 / ARGB_PRE 로 변환되어 있다
+        Image image = PackedImage.load(name);
+        if (image == null) {
+            try (java.io.InputStream in = Assets.open(name)) {
+                image = javax.imageio.ImageIO.read(in);
+            } catch (java.io.IOException e) {
+                System.err.println("이미지를 읽을 수 없습니다: " + name + " (" + e.getMessage() + ")");
+                return null;
+            }
+        }
+        if (image == null) {
+            System.err.println("이미지 형식이 아닙니다: " + name);
+            return null;
+        }
+        if (event.shouldCommit()) {
+            event.path = name;
+            event.width = image.getWidth(null);
+            event.height = image.getHeight(null);
+            event.decodedBytes = Math.max(0, event.width) * (long) Math.max(0, event.height) * 4;
+            event.commit();
+        }
+        return image;
+    }
+}
+
+// ========================================================
+// [핵심] JFR 사용자 이벤트 - waterbomb.jfc 프로파일로 기록
+// ========================================================
+// 기록하지 않을 때는 shouldCommit() 이 false 라서 필드 채우기/문자열 작업을 하지 않는다.
+@jdk.jfr.Name("waterbomb.ScreenTransition")
+@jdk.jfr.Label("Screen Transition")
+@jdk.jfr.Category({ "Water Bomb Man", "UI" })
+@jdk.jfr.Description("CrazyArcade_UI.showPanel 화면 전환")
+class ScreenTransitionEvent extends jdk.jfr.Event {
+    @jdk.jfr.Label("From")
+    String from;
+    @jdk.jfr.Label("To")
+    String to;
+
+    void commit(String from, String to) {
+        if (shouldCommit()) {
+            this.from = from;
+            this.to = to;
+            commit();
+        }
+    }
+}
+
+@jdk.jfr.Name("waterbomb.AssetLoad")
+@jdk.jfr.Label("Asset Load")
+@jdk.jfr.Category({ "Water Bomb Man", "Assets" })
+@jdk.jfr.Description("이미지 로드 및 디코딩")
+class AssetLoadEvent extends jdk.jfr.Event {
+    @jdk.jfr.Label("Path")
+    String path;
+    @jdk.jfr.Label("Width")
+    int width;
+    @jdk.jfr.Label("Height")
+    int height;
+    @jdk.jfr.Label("Decoded Size")
+    @jdk.jfr.DataAmount
+    long decodedBytes;
+}
+
+@jdk.jfr.Name("waterbomb.Audio")
+@jdk.jfr.Label("Audio Operation")
+@jdk.jfr.Category({ "Water Bomb Man", "Audio" })
+@jdk.jfr.Description("BGMPlayer 작업 (loadAndPlay / setVolume / pause / resume)")
+class AudioEvent extends jdk.jfr.Event {
+    @jdk.jfr.Label("Operation")
+    String operation;
+    @jdk.jfr.Label("Path")
+    String path;
+    @jdk.jfr.Label("PCM Size")
+    @jdk.jfr.DataAmount
+    long bytes;
+    @jdk.jfr.Label("Volume")
+    int volume;
+
+    void commit(String operation, String path, long bytes, int volume) {
+        if (shouldCommit()) {
+            this.operation = operation;
+            this.path = path;
+            this.bytes = bytes;
+            this.volume = volume;
+            commit();
+        }
+    }
+}
+
+@jdk.jfr.Name("waterbomb.SfxPlay")
+@jdk.jfr.Label("SFX Playback")
+@jdk.jfr.Category({ "Water Bomb Man", "Audio" })
+@jdk.jfr.Description("효과음 재생 요청")
+class SfxEvent extends jdk.jfr.Event {
+    @jdk.jfr.Label("Sound")
+    String sound;
+    @jdk.jfr.Label("PCM Size")
+    @jdk.jfr.DataAmount
+    long bytes;
+
+    void commit(String sound, long bytes) {
+        if (shouldCommit()) {
+            this.sound = sound;
+            this.bytes = bytes;
+            commit();
+        }
+    }
+}
+
+@jdk.jfr.Name("waterbomb.GameTick")
+@jdk.jfr.Label("Game Tick")
+@jdk.jfr.Category({ "Water Bomb Man", "Game" })
+@jdk.jfr.Description("게임 시뮬레이션 한 틱 (봇 탐색 포함)")
+@jdk.jfr.StackTrace(false)
+class GameTickEvent extends jdk.jfr.Event {
+    @jdk.jfr.Label("Tick")
+    long tick;
+    @jdk.jfr.Label("Players Alive")
+    int alive;
+    @jdk.jfr.Label("Bot Degraded Ticks")
+    long degradedTicks;
+
+    void commit(long tick, int alive, long degradedTicks) {
+        if (shouldCommit()) {
+            this.tick = tick;
+            this.alive = alive;
+            this.degradedTicks = degradedTicks;
+            commit();
+        }
+    }
+}
+
+// ========================================================
+// [핵심] 확대 뷰포트 - 논리 해상도(800x600)로 그린 뒤 화면 크기에 맞게 한 번에 확대
+// ========================================================
+// 패널들은 계속 800x600 절대 좌표로 배치되고, 여기서 오프스크린 버퍼를 한 번 확대해서 그린다.
+// 마우스 이벤트는 논리 좌표로 바꿔서 실제 컴포넌트에 다시 보내 준다.
+class ScaledViewport extends JComponent {
+    public static final int LOGICAL_WIDTH = 800;
+    public static final int LOGICAL_HEIGHT = 600;
+
+    static volatile ScaledViewport active;
+
+    final JComponent content;
+    private final MouseRetargeter retargeter = new MouseRetargeter();
+    private java.awt.image.VolatileImage buffer;
+    private Object interpolation = RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR;
+    private double scale = 1;
+    private int offsetX, offsetY;
+
+    public ScaledViewport(JComponent content) {
+        this.content = content;
+        setLayout(null);
+        setOpaque(true);
+        setPreferredSize(new Dimension(LOGICAL_WIDTH, LOGICAL_HEIGHT));
+        setMinimumSize(new Dimension(LOGICAL_WIDTH / 2, LOGICAL_HEIGHT / 2));
+        add(retargeter); // 먼저 추가한 컴포넌트가 위에 있어서 마우스를 먼저 받는다
+        add(content);
+        disableDoubleBuffering(content);
+        setSmoothScaling(GameSettings.smoothScaling);
+        if (!(RepaintManager.currentManager(this) instanceof InstrumentedRepaintManager))
+            RepaintManager.setCurrentManager(new InstrumentedRepaintManager());
+        active = this;
+    }
+
+    public void setSmoothScaling(boolean smooth) {
+        interpolation = smooth ? RenderingHints.VALUE_INTERPOLATION_BILINEAR
+                : RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR;
+        repaint();
+    }
+
+    public boolean isScaling() {
+        return getWidth() != LOGICAL_WIDTH || getHeight() != LOGICAL_HEIGHT;
+    }
+
+    @Override
+    public void doLayout() {
+        content.setBounds(0, 0, LOGICAL_WIDTH, LOGICAL_HEIGHT);
+        retargeter.setBounds(0, 0, getWidth(), getHeight());
+        scale = Math.min((double) getWidth() / LOGICAL_WIDTH, (double) getHeight() / LOGICAL_HEIGHT);
+        offsetX = (getWidth() - (int) Math.round(LOGICAL_WIDTH * scale)) / 2;
+        offsetY = (getHeight() - (int) Math.round(LOGICAL_HEIGHT * scale)) / 2;
+        boolean scaling = isScaling();
+        retargeter.setVisible(scaling);
+        if (scaling)
+            useSimpleScrolling(content);
+        repaint();
+    }
+
+    // 안쪽 패널들이 RepaintManager 버퍼를 따로 쓰지 않고 우리 버퍼(또는 루트 패인 버퍼)에 바로 그리게 한다
+    private static void disableDoubleBuffering(Component c) {
+        if (c instanceof JComponent)
+            ((JComponent) c).setDoubleBuffered(false);
+        if (c instanceof Container) {
+            for (Component child : ((Container) c).getComponents())
+                disableDoubleBuffering(child);
+        }
+    }
+
+    // JViewport 의 blit 스크롤은 화면에 직접 복사하므로 확대 중에는 repaint 방식으로 바꾼다
+    private static void useSimpleScrolling(Container c) {
+        for (Component child : c.getComponents()) {
+            if (child instanceof JViewport)
+                ((JViewport) child).setScrollMode(JViewport.SIMPLE_SCROLL_MODE);
+            if (child instanceof Container)
+                useSimpleScrolling((Container) child);
+        }
+    }
+
+    Rectangle toViewport(Rectangle logical) {
+        int x0 = offsetX + (int) Math.floor(logical.x * scale);
+        int y0 = offsetY + (int) Math.floor(logical.y * scale);
+        int x1 = offsetX + (int) Math.ceil((logical.x + logical.width) * scale);
+        int y1 = offsetY + (int) Math.ceil((logical.y + logical.height) * scale);
+        return new Rectangle(x0 - 1, y0 - 1, x1 - x0 + 2, y1 - y0 + 2);
+    }
+
+    private Rectangle toLogical(Rectangle r) {
+        int x0 = (int) Math.floor((r.x - offsetX) / scale);
+        int y0 = (int) Math.floor((r.y - offsetY) / scale);
+        int x1 = (int) Math.ceil((r.x + r.width - offsetX) / scale);
+        int y1 = (int) Math.ceil((r.y + r.height - offsetY) / scale);
+        return new Rectangle(x0 - 1, y0 - 1, x1 - x0 + 2, y1 - y0 + 2)
+                .intersection(new Rectangle(0, 0, LOGICAL_WIDTH, LOGICAL_HEIGHT));
+    }
+
+    Point toLogical(Point p) {
+        return new Point((int) Math.floor((p.x - offsetX) / scale), (int) Math.floor((p.y - offsetY) / scale));
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        if (!isScaling())
+            return;
+        g.setColor(Color.BLACK); // 화면비가 다를 때 남는 부분 (레터박스)
+        g.fillRect(0, 0, getWidth(), getHeight());
+    }
+
+    @Override
+    protected void paintChildren(Graphics g) {
+        if (!isScaling()) {
+            super.paintChildren(g);
+            return;
+        }
+        Rectangle clip = g.getClipBounds();
+        Rectangle dirty = clip == null ? new Rectangle(0, 0, LOGICAL_WIDTH, LOGICAL_HEIGHT) : toLogical(clip);
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        Graphics2D g2 = (Graphics2D) g;
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+        do {
+            int valid = buffer == null ? java.awt.image.VolatileImage.IMAGE_INCOMPATIBLE : buffer.validate(gc);
+            if (valid == java.awt.image.VolatileImage.IMAGE_INCOMPATIBLE) {
+                if (buffer != null)
+                    buffer.flush();
+                buffer = gc.createCompatibleVolatileImage(LOGICAL_WIDTH, LOGICAL_HEIGHT);
+            }
+            if (valid != java.awt.image.VolatileImage.IMAGE_OK)
+                dirty = new Rectangle(0, 0, LOGICAL_WIDTH, LOGICAL_HEIGHT); // 내용이 날아갔으니 전부 다시
+            // 바뀐 부분만 논리 해상도 버퍼에 다시 그린다
+            Graphics2D bg = buffer.createGraphics();
+            bg.setClip(dirty);
+            content.paint(bg);
+            bg.dispose();
+            // 한 프레임에 한 번, 버퍼 전체를 화면 크기로 확대
+            g2.drawImage(buffer, offsetX, offsetY, (int) Math.round(LOGICAL_WIDTH * scale),
+                    (int) Math.round(LOGICAL_HEIGHT * scale), null);
+        } while (buffer.contentsLost());
+    }
+
+    // 확대된 화면의 마우스 이벤트를 논리 좌표로 바꿔서 실제 컴포넌트에 전달
+    private class MouseRetargeter extends JComponent {
+        private Component pressed;
+        private Component clickTarget;
+        private Component hover;
+
+        MouseRetargeter() {
+            setFocusable(false);
+            enableEvents(AWTEvent.MOUSE_EVENT_MASK | AWTEvent.MOUSE_MOTION_EVENT_MASK
+                    | AWTEvent.MOUSE_WHEEL_EVENT_MASK);
+        }
+
+        @Override
+        protected void processMouseEvent(MouseEvent e) {
+            retarget(e);
+        }
+
+        @Override
+        protected void processMouseMotionEvent(MouseEvent e) {
+            retarget(e);
+        }
+
+        @Override
+        protected void processMouseWheelEvent(MouseWheelEvent e) {
+            Point lp = toLogical(e.getPoint());
+            Component target = SwingUtilities.getDeepestComponentAt(content, lp.x, lp.y);
+            while (target != null && target.getMouseWheelListeners().length == 0)
+                target = target.getParent();
+            if (target == null)
+                return;
+            Point tp = SwingUtilities.convertPoint(content, lp, target);
+            target.dispatchEvent(new MouseWheelEvent(target, e.getID(), e.getWhen(), e.getModifiersEx(), tp.x, tp.y,
+                    e.getXOnScreen(), e.getYOnScreen(), e.getClickCount(), e.isPopupTrigger(), e.getScrollType(),
+                    e.getScrollAmount(), e.getWheelRotation(), e.getPreciseWheelRotation()));
+        }
+
+        private void retarget(MouseEvent e) {
+            int id = e.getID();
+            if (id == MouseEvent.MOUSE_ENTERED)
+                return;
+            Point lp = toLogical(e.getPoint());
+            Component target;
+            if (id == MouseEvent.MOUSE_CLICKED) {
+                target = clickTarget; // 누른 곳과 뗀 곳이 같은 컴포넌트일 때만 클릭
+                clickTarget = null;
+            } else if (pressed != null && (id == MouseEvent.MOUSE_DRAGGED || id == MouseEvent.MOUSE_RELEASED)) {
+                target = pressed; // 드래그 중에는 누른 컴포넌트가 계속 받는다 (슬라이더 등)
+            } else if (id == MouseEvent.MOUSE_EXITED) {
+                target = null;
+            } else {
+                target = SwingUtilities.getDeepestComponentAt(content, lp.x, lp.y);
+            }
+
+            if (target != hover && pressed == null && id != MouseEvent.MOUSE_CLICKED) {
+                if (hover != null)
+                    forward(hover, e, MouseEvent.MOUSE_EXITED, lp);
+                if (target != null)
+                    forward(target, e, MouseEvent.MOUSE_ENTERED, lp);
+                hover = target;
+                setCursor(target != null ? target.getCursor() : Cursor.getDefaultCursor());
+            }
+            if (target == null)
+                return;
+            if (id == MouseEvent.MOUSE_PRESSED)
+                pressed = target;
+            forward(target, e, id, lp);
+            if (id == MouseEvent.MOUSE_RELEASED) {
+                clickTarget = target.contains(SwingUtilities.convertPoint(content, lp, target)) ? target : null;
+                pressed = null;
+            }
+        }
+
+        private void forward(Component target, MouseEvent e, int id, Point lp) {
+            Point tp = SwingUtilities.convertPoint(content, lp, target);
+            target.dispatchEvent(new MouseEvent(target, id, e.getWhen(), e.getModifiersEx(), tp.x, tp.y,
+                    e.getXOnScreen(), e.getYOnScreen(), e.getClickCount(), e.isPopupTrigger(), e.getButton()));
+        }
+    }
+}